@@ -0,0 +1,130 @@
+package com.github.redhatqe.polarizer.reporter.benchmarks;
+
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Error;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Failure;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Properties;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Property;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Builds the synthetic mapping files and xunit trees used by the benchmarks.  Everything is deterministic, so the
+ * same parameters always produce the same data.
+ */
+public class Fixtures {
+    public static final String PROJECT = "PROJ";
+    public static final int PROJECTS_PER_METHOD = 3;
+    public static final int TESTCASES_PER_SUITE = 100;
+
+    private Fixtures() {
+
+    }
+
+    public static String qual(int i) {
+        return String.format("com.example.pkg%d.Class%d.method%d", i % 50, i % 1000, i);
+    }
+
+    /**
+     * Writes a mapping.json with the given number of methods, each mapped in several projects and with 0 to 4
+     * parameters
+     *
+     * @param methods how many methods are in the mapping
+     * @return the temporary mapping file, deleted when the JVM exits
+     */
+    public static File mapping(int methods) {
+        try {
+            File f = File.createTempFile("bench-mapping-", ".json");
+            f.deleteOnExit();
+            try (BufferedWriter w = Files.newBufferedWriter(f.toPath(), StandardCharsets.UTF_8)) {
+                w.write("{\n");
+                for (int i = 0; i < methods; i++) {
+                    w.write(String.format("  \"%s\": {", qual(i)));
+                    for (int p = 0; p < PROJECTS_PER_METHOD; p++) {
+                        String project = p == 0 ? PROJECT : PROJECT + p;
+                        w.write(String.format("\"%s\": {\"id\": \"%s-%d\", \"parameters\": [", project, project, i));
+                        int params = i % 5;
+                        for (int a = 0; a < params; a++)
+                            w.write(String.format("%s\"arg%d\"", a == 0 ? "" : ", ", a));
+                        w.write(p == PROJECTS_PER_METHOD - 1 ? "]}" : "]}, ");
+                    }
+                    w.write(i == methods - 1 ? "}\n" : "},\n");
+                }
+                w.write("}\n");
+            }
+            return f;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Property property(String name, String value) {
+        Property prop = new Property();
+        prop.setName(name);
+        prop.setValue(value);
+        return prop;
+    }
+
+    /**
+     * Creates an xunit tree with the given number of testcases, split into testsuites of TESTCASES_PER_SUITE.  Every
+     * tenth testcase has a failure and every fiftieth an error, so the optional elements are exercised as well.
+     *
+     * @param testcases total number of testcases
+     * @return the Testsuites
+     */
+    public static Testsuites xunit(int testcases) {
+        Testsuites suites = new Testsuites();
+        Properties props = new Properties();
+        props.getProperty().add(property("polarion-user-id", "bench"));
+        props.getProperty().add(property("polarion-project-id", PROJECT));
+        props.getProperty().add(property("polarion-testrun-title", "benchmark run"));
+        suites.setProperties(props);
+
+        int failures = 0;
+        int errors = 0;
+        Testsuite suite = null;
+        for (int i = 0; i < testcases; i++) {
+            if (i % TESTCASES_PER_SUITE == 0) {
+                suite = new Testsuite();
+                suite.setName("suite" + i / TESTCASES_PER_SUITE);
+                suite.setTime("1.0");
+                suites.getTestsuite().add(suite);
+                failures = 0;
+                errors = 0;
+            }
+            Testcase tc = new Testcase();
+            tc.setName("method" + i);
+            tc.setClassname(String.format("com.example.pkg%d.Class%d", i % 50, i % 1000));
+            tc.setTime("0.01");
+            if (i % 50 == 49) {
+                Error err = new Error();
+                err.setMessage("java.lang.NullPointerException");
+                err.setContent("at com.example.Class.method(Class.java:42)\n");
+                tc.getError().add(err);
+                errors++;
+            } else if (i % 10 == 9) {
+                Failure fail = new Failure();
+                fail.setMessage("expected [true] but found [false]");
+                tc.getFailure().add(fail);
+                failures++;
+            }
+            Properties tcProps = new Properties();
+            tcProps.getProperty().add(property("polarion-testcase-id", PROJECT + "-" + i));
+            tcProps.getProperty().add(property("polarion-parameter-arg0", Integer.toString(i)));
+            tc.setProperties(tcProps);
+            suite.getTestcase().add(tc);
+            suite.setTests(Integer.toString(suite.getTestcase().size()));
+            suite.setFailures(Integer.toString(failures));
+            suite.setErrors(Integer.toString(errors));
+            suite.setSkipped("0");
+        }
+        return suites;
+    }
+}
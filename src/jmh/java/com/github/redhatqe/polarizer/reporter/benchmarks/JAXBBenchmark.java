@@ -0,0 +1,84 @@
+package com.github.redhatqe.polarizer.reporter.benchmarks;
+
+import com.github.redhatqe.polarizer.reporter.configuration.ReportInfo;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+import com.github.redhatqe.polarizer.reporter.jaxb.IJAXBHelper;
+import com.github.redhatqe.polarizer.reporter.jaxb.JAXBReporter;
+import com.github.redhatqe.polarizer.reporter.stream.XUnitWriter;
+import com.github.redhatqe.polarizer.reporter.utils.FileHelper;
+import org.openjdk.jmh.annotations.*;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures marshalling, unmarshalling and validation of xunit files of increasing size through IJAXBHelper, and
+ * writing the same files with the stax and direct XUnitWriters
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class JAXBBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int testcases;
+
+    private Testsuites suites;
+    private URL xsd;
+    private File xunit;
+    private File out;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.suites = Fixtures.xunit(this.testcases);
+        this.xsd = new JAXBReporter().getXSDFromResource(Testsuites.class);
+        this.xunit = File.createTempFile("bench-xunit-", ".xml");
+        this.out = File.createTempFile("bench-xunit-out-", ".xml");
+        IJAXBHelper.marshaller(this.suites, this.xunit, this.xsd);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        FileHelper.deleteFile(this.xunit);
+        FileHelper.deleteFile(this.out);
+    }
+
+    @Benchmark
+    public File marshaller() {
+        IJAXBHelper.marshaller(this.suites, this.out, null);
+        return this.out;
+    }
+
+    @Benchmark
+    public File staxWriter() throws IOException, XMLStreamException {
+        return this.write(ReportInfo.STAX);
+    }
+
+    @Benchmark
+    public File directWriter() throws IOException, XMLStreamException {
+        return this.write(ReportInfo.DIRECT);
+    }
+
+    private File write(String kind) throws IOException, XMLStreamException {
+        try (XUnitWriter writer = XUnitWriter.open(this.out, kind)) {
+            writer.startTestsuites(this.suites);
+            for (Testsuite ts : this.suites.getTestsuite())
+                writer.writeTestsuite(ts);
+        }
+        return this.out;
+    }
+
+    @Benchmark
+    public Optional<Testsuites> unmarshaller() {
+        return IJAXBHelper.unmarshaller(Testsuites.class, this.xunit, null);
+    }
+
+    @Benchmark
+    public Boolean validateXML() {
+        return IJAXBHelper.validateXML(this.xunit, this.xsd);
+    }
+}
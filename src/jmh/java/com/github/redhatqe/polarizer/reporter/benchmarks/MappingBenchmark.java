@@ -0,0 +1,83 @@
+package com.github.redhatqe.polarizer.reporter.benchmarks;
+
+import com.github.redhatqe.polarizer.reporter.IdParams;
+import com.github.redhatqe.polarizer.reporter.mapping.MappingCompiler;
+import com.github.redhatqe.polarizer.reporter.mapping.MappingIndex;
+import com.github.redhatqe.polarizer.reporter.mapping.MappingParser;
+import com.github.redhatqe.polarizer.reporter.mapping.MappingSharder;
+import com.github.redhatqe.polarizer.reporter.utils.FileHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to read a mapping.json file, both as the raw map returned by FileHelper and as the
+ * shared MappingIndex built on top of it (for all projects or just one), and how long it takes to open and query the
+ * same mapping once compiled, or once split into a shard per package
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int methods;
+
+    private File mapping;
+    private File compiled;
+    private File sharded;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.mapping = Fixtures.mapping(this.methods);
+        this.compiled = File.createTempFile("bench-mapping-", ".bin");
+        MappingCompiler.compile(this.mapping, this.compiled);
+        this.sharded = Files.createTempDirectory("bench-mapping-").toFile();
+        MappingSharder.shard(MappingParser.parse(this.mapping), this.sharded, 3);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        MappingIndex.invalidate(this.mapping);
+        MappingIndex.invalidate(this.compiled);
+        FileHelper.deleteFile(this.mapping);
+        FileHelper.deleteFile(this.compiled);
+        MappingIndex.invalidate(this.sharded);
+        File[] shards = this.sharded.listFiles();
+        for (File shard : shards == null ? new File[0] : shards)
+            FileHelper.deleteFile(shard);
+        FileHelper.deleteFile(this.sharded);
+    }
+
+    @Benchmark
+    public Map<String, Map<String, IdParams>> loadMapping() {
+        return FileHelper.loadMapping(this.mapping);
+    }
+
+    @Benchmark
+    public MappingIndex loadIndex() {
+        MappingIndex.invalidate(this.mapping);
+        return MappingIndex.load(this.mapping);
+    }
+
+    @Benchmark
+    public MappingIndex loadProjectedIndex() {
+        MappingIndex.invalidate(this.mapping);
+        return MappingIndex.load(this.mapping, Fixtures.PROJECT);
+    }
+
+    @Benchmark
+    public IdParams loadCompiledIndex() {
+        MappingIndex.invalidate(this.compiled);
+        return MappingIndex.load(this.compiled).get(Fixtures.qual(this.methods / 2), Fixtures.PROJECT);
+    }
+
+    @Benchmark
+    public IdParams loadShardedIndex() {
+        MappingIndex.invalidate(this.sharded);
+        return MappingIndex.load(this.sharded).get(Fixtures.qual(this.methods / 2), Fixtures.PROJECT);
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.redhatqe.polarizer.reporter.benchmarks;
+
+import com.github.redhatqe.polarizer.reporter.XUnitReporter;
+import com.github.redhatqe.polarizer.reporter.configuration.Serializer;
+import com.github.redhatqe.polarizer.reporter.configuration.data.XUnitConfig;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Properties;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Property;
+import org.openjdk.jmh.annotations.*;
+import org.testng.internal.TestResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per testcase and per testsuite property building done by XUnitReporter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReporterBenchmark {
+    @State(Scope.Benchmark)
+    public static class MethodState {
+        @Param({"1", "16", "128"})
+        public int width;
+
+        public TestResult result;
+        public List<String> args;
+        public Property polarionID;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Object[] params = new Object[this.width];
+            this.args = new ArrayList<>();
+            for (int i = 0; i < this.width; i++) {
+                this.args.add("arg" + i);
+                params[i] = i % 4 == 0 ? null : "value-" + i;
+            }
+            this.result = new TestResult();
+            this.result.setParameters(params);
+            this.polarionID = Fixtures.property("polarion-testcase-id", Fixtures.PROJECT + "-1");
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ConfigState {
+        @Param({"5", "50"})
+        public int custom;
+
+        public XUnitConfig cfg;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            String yaml;
+            try (InputStream is = ReporterBenchmark.class.getClassLoader()
+                    .getResourceAsStream("dummy-polarizer-xunit.yml");
+                 Scanner sc = new Scanner(is, StandardCharsets.UTF_8.name())) {
+                yaml = sc.useDelimiter("\\A").next();
+            }
+            this.cfg = Serializer.fromYaml(XUnitConfig.class, yaml);
+            this.cfg.setProject(Fixtures.PROJECT);
+            Map<String, String> props = this.cfg.getXunit().getCustom().getProperties();
+            for (int i = props.size(); i < this.custom; i++)
+                props.put("field" + i, "value" + i);
+        }
+    }
+
+    @Benchmark
+    public Properties getPropertiesFromMethod(MethodState state) {
+        return XUnitReporter.getPropertiesFromMethod(state.result, state.args, state.polarionID);
+    }
+
+    @Benchmark
+    public List<Property> setPropsFromConfig(ConfigState state) {
+        List<Property> props = new ArrayList<>();
+        props.add(Fixtures.property("polarion-project-id", Fixtures.PROJECT));
+        props.add(Fixtures.property("polarion-custom-arch", "aarch64"));
+        XUnitReporter.setPropsFromConfig(state.cfg, props);
+        return props;
+    }
+}
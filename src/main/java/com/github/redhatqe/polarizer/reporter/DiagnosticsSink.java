@@ -0,0 +1,209 @@
+package com.github.redhatqe.polarizer.reporter;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.redhatqe.polarizer.reporter.utils.FileHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the test methods that were run but have no entry in the mapping file for the project.
+ * <p>
+ * There is one sink per run.  Each distinct method/project pair is written once to a buffered log as it is found.
+ * While the run goes on the log is a uniquely named bad-tests-*.txt in /tmp, so that JVMs running in parallel don't
+ * write over each other, and it is only created once the first unmapped method turns up.  When the report is written,
+ * the log is moved next to it as bad-tests.txt, along with a bad-tests.json summary with the number of times each
+ * method was seen.  Both replace the ones of an earlier run in the same directory, so nothing piles up.  If the log
+ * can not be written the methods are still logged and counted, and the summary is still written.
+ */
+public class DiagnosticsSink implements Closeable {
+    public final static String LOG = "bad-tests.txt";
+    public final static String SUMMARY = "bad-tests.json";
+    private final static Logger logger = LoggerFactory.getLogger(DiagnosticsSink.class);
+    private static DiagnosticsSink current = null;
+
+    private final File spool;
+    private File log = null;
+    private File summary = null;
+    private BufferedWriter writer = null;
+    private boolean logFailed = false;
+    private final Map<String, Unmapped> unmapped = new LinkedHashMap<>();
+    private boolean closed = false;
+
+    public static class Unmapped {
+        @JsonProperty
+        public final String method;
+        @JsonProperty
+        public final String project;
+        @JsonProperty
+        public int count = 0;
+
+        Unmapped(String method, String project) {
+            this.method = method;
+            this.project = project;
+        }
+    }
+
+    /**
+     * @param spool the directory the log is written to until the sink is closed
+     */
+    public DiagnosticsSink(File spool) {
+        this.spool = spool;
+    }
+
+    /**
+     * @return the sink for the current run, creating it if the run doesn't have one yet
+     */
+    public static synchronized DiagnosticsSink current() {
+        if (current == null)
+            current = new DiagnosticsSink(new File("/tmp"));
+        return current;
+    }
+
+    /**
+     * Closes the sink of the current run, if there is one, so that the next run starts a new one
+     *
+     * @param dir the directory the report was written to, where the log and summary end up
+     */
+    public static synchronized void finish(File dir) {
+        if (current == null)
+            return;
+        try {
+            current.close(dir);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        current = null;
+    }
+
+    /**
+     * Records that a method has no entry in the mapping file for the project
+     *
+     * @param qual the unique name of the method
+     * @param project the Polarion project
+     */
+    public synchronized void unmapped(String qual, String project) {
+        String key = qual + "\u0000" + project;
+        Unmapped u = this.unmapped.get(key);
+        if (u == null) {
+            u = new Unmapped(qual, project);
+            this.unmapped.put(key, u);
+            String err = String.format("%s does not exist in mapping file for Project %s", qual, project);
+            logger.error(err);
+            this.write(err);
+        }
+        u.count++;
+    }
+
+    public synchronized List<Unmapped> getUnmapped() {
+        return new ArrayList<>(this.unmapped.values());
+    }
+
+    /**
+     * @return the log of unmapped methods, or null if there were none
+     */
+    public synchronized File getLog() {
+        return log;
+    }
+
+    /**
+     * @return the json summary, or null if it has not been written
+     */
+    public synchronized File getSummary() {
+        return summary;
+    }
+
+    private void write(String line) {
+        if (this.closed || this.logFailed)
+            return;
+        try {
+            if (this.writer == null) {
+                this.log = FileHelper.makeTempFile(this.spool.getPath(), "bad-tests-", ".txt", "rw-rw----");
+                this.writer = Files.newBufferedWriter(this.log.toPath(), StandardCharsets.UTF_8);
+            }
+            this.writer.write(line);
+            this.writer.newLine();
+        } catch (IOException e) {
+            // Give up on the log rather than the run, the summary is still written when the sink is closed
+            logger.warn(String.format("Could not write the log of unmapped methods %s: %s", this.log, e));
+            this.logFailed = true;
+            try {
+                if (this.writer != null)
+                    this.writer.close();
+            } catch (IOException ignored) {
+                // Already failed
+            }
+            this.writer = null;
+            if (this.log != null)
+                FileHelper.deleteFile(this.log);
+            this.log = null;
+        }
+    }
+
+    /**
+     * Flushes the log and writes the json summary next to it
+     */
+    @Override
+    public void close() throws IOException {
+        this.close(null);
+    }
+
+    /**
+     * Flushes the log, moves it into dir and writes the json summary there.  Nothing is written if every method was
+     * mapped, but the files of an earlier run in dir are still removed.  If the log could not be written only the
+     * summary is.
+     *
+     * @param dir where the log and summary go, or null to leave the log where it was spooled
+     */
+    public synchronized void close(File dir) throws IOException {
+        if (this.closed)
+            return;
+        this.closed = true;
+        if (this.writer != null)
+            this.writer.close();
+        if (dir != null) {
+            FileHelper.deleteFile(new File(dir, LOG));
+            FileHelper.deleteFile(new File(dir, SUMMARY));
+        }
+        if (this.unmapped.isEmpty()) {
+            if (this.log != null)
+                FileHelper.deleteFile(this.log);
+            this.log = null;
+            logger.info("Every method that ran was in the mapping file");
+            return;
+        }
+
+        if (dir != null) {
+            this.summary = new File(dir, SUMMARY);
+            if (this.log != null) {
+                File moved = new File(dir, LOG);
+                Files.move(this.log.toPath(), moved.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                this.log = moved;
+            }
+        } else if (this.log != null) {
+            String name = this.log.getName();
+            this.summary = new File(this.log.getParentFile(), name.substring(0, name.lastIndexOf('.')) + ".json");
+        } else
+            this.summary = File.createTempFile("bad-tests-", ".json", this.spool);
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(this.summary, this.unmapped.values());
+        if (this.log == null)
+            logger.warn(String.format("%d methods were not in the mapping file, see %s", this.unmapped.size(),
+                    this.summary));
+        else
+            logger.warn(String.format("%d methods were not in the mapping file, see %s and %s", this.unmapped.size(),
+                    this.log, this.summary));
+    }
+}
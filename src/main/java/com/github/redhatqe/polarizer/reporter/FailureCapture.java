@@ -0,0 +1,130 @@
+package com.github.redhatqe.polarizer.reporter;
+
+import com.github.redhatqe.polarizer.reporter.configuration.ReportInfo;
+import com.github.redhatqe.polarizer.reporter.exceptions.InvalidArgumentError;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides how much of a Throwable ends up in the &lt;error&gt; and &lt;failure&gt; elements of a testcase.
+ * <p>
+ * Stack traces are cut down to a maximum number of frames per throwable and a maximum depth of causes, and messages to
+ * a maximum number of UTF-8 bytes (keeping the head of the message).  When deduplication is turned on (it is off by
+ * default), each distinct stack trace is written out once per testsuite.  Later testcases that fail the same way only
+ * get a short reference to the first one, so a data provider that fails 10k times in the same place does not store
+ * 10k copies of the trace.
+ */
+public class FailureCapture {
+    private final int maxFrames;
+    private final int maxMessageBytes;
+    private final int causeDepth;
+    private final boolean dedupe;
+
+    public FailureCapture(int maxFrames, int maxMessageBytes, int causeDepth, boolean dedupe) {
+        if (maxFrames < 0 || maxMessageBytes < 0 || causeDepth < 0)
+            throw new InvalidArgumentError(String.format("Failure capture bounds can not be negative: max-frames %d, "
+                    + "max-message-bytes %d, cause-depth %d", maxFrames, maxMessageBytes, causeDepth));
+        this.maxFrames = maxFrames;
+        this.maxMessageBytes = maxMessageBytes;
+        this.causeDepth = causeDepth;
+        this.dedupe = dedupe;
+    }
+
+    public FailureCapture(ReportInfo info) {
+        this(info.getMaxFrames(), info.getMaxMessageBytes(), info.getCauseDepth(), info.getDedupeTraces());
+    }
+
+    /**
+     * Gets the head of the message of t, cut so that it is at most maxMessageBytes long when encoded as UTF-8
+     *
+     * @param t the Throwable
+     * @return the bounded message, or null if t has no message
+     */
+    public String message(Throwable t) {
+        return this.truncate(t.getMessage());
+    }
+
+    public String truncate(String msg) {
+        if (msg == null || msg.length() * 3 <= this.maxMessageBytes)
+            return msg;
+        int bytes = 0;
+        int end = 0;
+        while (end < msg.length()) {
+            int cp = msg.codePointAt(end);
+            int len = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+            if (bytes + len > this.maxMessageBytes)
+                break;
+            bytes += len;
+            end += Character.charCount(cp);
+        }
+        return end == msg.length() ? msg : msg.substring(0, end);
+    }
+
+    /**
+     * Renders the stack trace of t and up to causeDepth of its causes, each with at most maxFrames frames
+     *
+     * @param t the Throwable
+     * @return the bounded stack trace
+     */
+    public String trace(Throwable t) {
+        StringBuilder sb = new StringBuilder();
+        Set<Throwable> seen = new HashSet<>();
+        Throwable current = t;
+        for (int depth = 0; current != null && depth <= this.causeDepth && seen.add(current); depth++) {
+            if (depth > 0) {
+                sb.append("Caused by: ").append(current.getClass().getName());
+                String msg = this.message(current);
+                if (msg != null)
+                    sb.append(": ").append(msg);
+                sb.append("\n");
+            }
+            StackTraceElement[] frames = current.getStackTrace();
+            int shown = Math.min(frames.length, this.maxFrames);
+            for (int i = 0; i < shown; i++)
+                sb.append(frames[i].toString()).append("\n");
+            if (shown < frames.length)
+                sb.append("... ").append(frames.length - shown).append(" more\n");
+            current = current.getCause();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Gets the content for an &lt;error&gt; element.  The first time a stack trace is seen in a testsuite the full
+     * (bounded) trace is returned, tagged with its hash.  After that only a reference to the hash is returned.
+     *
+     * @param t the Throwable
+     * @param traces hash -> unique name of the method that first reported it, for the current testsuite
+     * @param qual the unique name of the method that failed
+     * @return the content for the element
+     */
+    public String content(Throwable t, Map<String, String> traces, String qual) {
+        String trace = this.trace(t);
+        if (!this.dedupe)
+            return trace;
+
+        String hash = FailureCapture.hash(trace);
+        String first = traces.putIfAbsent(hash, qual);
+        if (first == null)
+            return String.format("[trace %s]\n%s", hash, trace);
+        return String.format("[trace %s] same stack trace as first reported by %s\n", hash, first);
+    }
+
+    private static String hash(String trace) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] digest = md.digest(trace.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i++)
+                sb.append(String.format("%02x", digest[i]));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(trace.hashCode());
+        }
+    }
+}
@@ -20,10 +20,13 @@ public class FullResult {
         FullResult fr = new FullResult();
         fr.total = this.total + x.total;
         fr.skips = this.skips + x.skips;
+        fr.fails = this.fails + x.fails;
         fr.errors = this.errors + x.errors;
         fr.passes = this.passes + x.passes;
         fr.classname = x.classname;
         fr.dataProvider = this.dataProvider && x.dataProvider;
+        fr.errorsByMethod.addAll(this.errorsByMethod);
+        fr.errorsByMethod.addAll(x.errorsByMethod);
         return fr;
     }
 }
@@ -0,0 +1,194 @@
+package com.github.redhatqe.polarizer.reporter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the results of a group of test method invocations (a class, a &lt;test&gt; or a whole run).
+ * <p>
+ * All of the counters can be updated concurrently, so the same accumulator can be shared by every thread that reports
+ * results for its group.  Durations of the invocations are tracked as well, so min/max/total times don't need a second
+ * pass over the testcases.  Unlike FullResult, the counts are kept as numbers all the way through to the report and
+ * two accumulators can be merged without losing anything.
+ */
+public class ResultAccumulator {
+    private final LongAdder total = new LongAdder();
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder fails = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder skips = new LongAdder();
+    private final LongAdder timed = new LongAdder();
+    private final LongAdder durationSum = new LongAdder();
+    private final AtomicLong durationMin = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong durationMax = new AtomicLong(Long.MIN_VALUE);
+    private final Set<String> errorsByMethod = ConcurrentHashMap.newKeySet();
+    // Hash of each distinct stack trace written so far -> method that first reported it
+    private final Map<String, String> traces = new ConcurrentHashMap<>();
+    private volatile String classname = "";
+
+    /**
+     * Creates an accumulator holding fixed counts, eg the numbers written into a &lt;testsuite&gt;
+     */
+    public static ResultAccumulator of(long total, long fails, long errors, long skips) {
+        ResultAccumulator acc = new ResultAccumulator();
+        acc.total.add(total);
+        acc.fails.add(fails);
+        acc.errors.add(errors);
+        acc.skips.add(skips);
+        acc.passes.add(Math.max(0, total - fails - errors - skips));
+        return acc;
+    }
+
+    public void passed() {
+        this.total.increment();
+        this.passes.increment();
+    }
+
+    public void failed() {
+        this.total.increment();
+        this.fails.increment();
+    }
+
+    /**
+     * @param qual the unique name of the method that raised the error
+     */
+    public void errored(String qual) {
+        this.total.increment();
+        this.errors.increment();
+        this.errorsByMethod.add(qual);
+    }
+
+    public void skipped() {
+        this.total.increment();
+        this.skips.increment();
+    }
+
+    /**
+     * Counts an invocation whose status is none of success, failure or skip
+     */
+    public void other() {
+        this.total.increment();
+    }
+
+    /**
+     * @param millis how long an invocation took
+     */
+    public void timed(long millis) {
+        this.timed.increment();
+        this.durationSum.add(millis);
+        this.durationMin.accumulateAndGet(millis, Math::min);
+        this.durationMax.accumulateAndGet(millis, Math::max);
+    }
+
+    /**
+     * Adds all the counts, durations, errors and traces of other into this accumulator
+     *
+     * @param other the accumulator to merge in
+     * @return this accumulator
+     */
+    public ResultAccumulator merge(ResultAccumulator other) {
+        this.total.add(other.getTotal());
+        this.passes.add(other.getPasses());
+        this.fails.add(other.getFails());
+        this.errors.add(other.getErrors());
+        this.skips.add(other.getSkips());
+        this.mergeDurations(other);
+        this.errorsByMethod.addAll(other.errorsByMethod);
+        other.traces.forEach(this.traces::putIfAbsent);
+        if (!other.classname.isEmpty())
+            this.classname = other.classname;
+        return this;
+    }
+
+    /**
+     * Adds only the durations of other into this accumulator, eg to carry the timings of the invocations over to the
+     * fixed counts of a testsuite
+     *
+     * @param other the accumulator whose durations are merged in
+     * @return this accumulator
+     */
+    public ResultAccumulator mergeDurations(ResultAccumulator other) {
+        this.timed.add(other.timed.sum());
+        this.durationSum.add(other.durationSum.sum());
+        this.durationMin.accumulateAndGet(other.durationMin.get(), Math::min);
+        this.durationMax.accumulateAndGet(other.durationMax.get(), Math::max);
+        return this;
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public long getPasses() {
+        return passes.sum();
+    }
+
+    public long getFails() {
+        return fails.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getSkips() {
+        return skips.sum();
+    }
+
+    /**
+     * @return sum of the durations of every timed invocation, in milliseconds
+     */
+    public long getDurationSum() {
+        return durationSum.sum();
+    }
+
+    /**
+     * @return shortest duration of a timed invocation in milliseconds, or 0 if nothing was timed
+     */
+    public long getDurationMin() {
+        return this.timed.sum() == 0 ? 0 : durationMin.get();
+    }
+
+    /**
+     * @return longest duration of a timed invocation in milliseconds, or 0 if nothing was timed
+     */
+    public long getDurationMax() {
+        return this.timed.sum() == 0 ? 0 : durationMax.get();
+    }
+
+    public Set<String> getErrorsByMethod() {
+        return Collections.unmodifiableSet(errorsByMethod);
+    }
+
+    public Map<String, String> getTraces() {
+        return traces;
+    }
+
+    public String getClassname() {
+        return classname;
+    }
+
+    public void setClassname(String classname) {
+        this.classname = classname;
+    }
+
+    /**
+     * @return a FullResult snapshot of the counts, for callers that still use FullResult
+     */
+    public FullResult toFullResult() {
+        FullResult fr = new FullResult();
+        fr.total = (int) this.getTotal();
+        fr.passes = (int) this.getPasses();
+        fr.fails = (int) this.getFails();
+        fr.errors = (int) this.getErrors();
+        fr.skips = (int) this.getSkips();
+        fr.classname = this.classname;
+        fr.errorsByMethod = new TreeSet<>(this.errorsByMethod);
+        return fr;
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.redhatqe.polarizer.reporter;
+
+import com.github.redhatqe.polarizer.reporter.model.CompactTestcase;
+import com.github.redhatqe.polarizer.reporter.stream.XUnitWriter;
+import com.github.redhatqe.polarizer.reporter.utils.FileHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.ITestResult;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * An on-disk spool of the &lt;testcase&gt; elements for a single test class.
+ *
+ * Testcases are appended as xml fragments while the tests run, along with the result counts for the class.  When
+ * the report is generated, the fragment is copied verbatim into its &lt;testsuite&gt; so nothing has to be rebuilt.
+ * The spool is flushed whenever a &lt;test&gt; with the class finishes, so a crash loses at most the &lt;test&gt;
+ * that was running.  The spools of a suite are written to polarion-spool/&lt;class&gt;.xml under the suite's TestNG
+ * output directory and only deleted once the report has been written, so after a crash the testcases of every
+ * finished &lt;test&gt; are still there, one well-formed fragment per class.  A later run of the same suite with the
+ * same output directory starts them over.
+ */
+public class TestcaseSpool implements Closeable {
+    private final static Logger logger = LoggerFactory.getLogger(TestcaseSpool.class);
+    private final File file;
+    private final XUnitWriter writer;
+    private final ResultAccumulator result = new ResultAccumulator();
+    private Error error = null;
+    private boolean closed = false;
+
+    /**
+     * @param dir the directory of the spools of the suite
+     * @param name the name of the test class
+     * @param kind the report.writer setting, which picks the XUnitWriter the fragment is written with
+     */
+    public TestcaseSpool(File dir, String name, String kind) throws IOException, XMLStreamException {
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException(String.format("Could not create spool directory %s", dir));
+        this.file = new File(dir, name + ".xml");
+        this.writer = XUnitWriter.fragment(this.file, 2, kind);
+        logger.info(String.format("Spooling testcases for %s to %s", name, this.file));
+    }
+
+    /**
+     * Converts the result into a testcase and appends it to the spool
+     *
+     * @param res the finished test method invocation
+     * @param ip the IdParams from the mapping.json file for the method
+     * @param qual the unique name of the method
+     * @param capture how much of any failure gets recorded
+     */
+    public synchronized void append(ITestResult res, IdParams ip, String qual, FailureCapture capture)
+            throws XMLStreamException {
+        if (this.closed)
+            throw new IllegalStateException(String.format("%s was already closed", this.file));
+        CompactTestcase tc = XUnitReporter.createTestcase(res, ip, this.result, qual, capture);
+        tc.write(this.writer);
+    }
+
+    /**
+     * Remembers an error raised while converting a result so that it can be rethrown when the report is generated
+     * instead of failing the test run itself
+     */
+    public synchronized void fail(Error err) {
+        if (this.error == null)
+            this.error = err;
+    }
+
+    public synchronized void rethrow() {
+        if (this.error != null)
+            throw this.error;
+    }
+
+    public synchronized ResultAccumulator getResult() {
+        return result;
+    }
+
+    public synchronized int size() {
+        return this.writer.getTestcaseCount();
+    }
+
+    public synchronized int getPropertyCount() {
+        return this.writer.getPropertyCount();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized void flush() throws XMLStreamException {
+        if (!this.closed)
+            this.writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed)
+            return;
+        this.closed = true;
+        this.writer.close();
+    }
+
+    /**
+     * Deletes the spool, and its directory once it is the last spool in it
+     */
+    public boolean delete() {
+        boolean deleted = FileHelper.deleteFile(this.file);
+        String[] left = this.file.getParentFile().list();
+        if (left != null && left.length == 0)
+            FileHelper.deleteFile(this.file.getParentFile());
+        return deleted;
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.redhatqe.polarizer.reporter;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.redhatqe.polarizer.reporter.configuration.data.XUnitConfig;
+import com.github.redhatqe.polarizer.reporter.exceptions.InvalidArgumentError;
+import com.github.redhatqe.polarizer.reporter.exceptions.XMLMarshallError;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+import com.github.redhatqe.polarizer.reporter.jaxb.JAXBRegistry;
+import com.github.redhatqe.polarizer.reporter.mapping.MappingIndex;
+import com.github.redhatqe.polarizer.reporter.metrics.ReportMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Converts many xunit files with one XUnitConfig in a single JVM.
+ * <p>
+ * The config, the MappingIndex, the JAXBContexts and the compiled xunit schema are loaded once and shared by all the
+ * conversions, which run in parallel on a pool of report.threads workers.  A failure converting one file does not stop
+ * the others, and the outcome of every file is reported at the end.
+ */
+public class XUnitBatchConverter {
+    private final static Logger logger = LoggerFactory.getLogger(XUnitBatchConverter.class);
+
+    private final XUnitConfig cfg;
+    private final int threads;
+
+    public static class Outcome {
+        @JsonProperty
+        public final String input;
+        @JsonProperty
+        public final String output;
+        @JsonProperty
+        public final String error;
+        @JsonProperty
+        public final long millis;
+
+        Outcome(String input, String output, String error, long millis) {
+            this.input = input;
+            this.output = output;
+            this.error = error;
+            this.millis = millis;
+        }
+
+        public boolean succeeded() {
+            return this.error == null;
+        }
+    }
+
+    public XUnitBatchConverter(XUnitConfig cfg) {
+        this(cfg, cfg.getReport().getThreads());
+    }
+
+    public XUnitBatchConverter(XUnitConfig cfg, int threads) {
+        if (threads < 1)
+            throw new InvalidArgumentError("threads must be at least 1");
+        this.cfg = cfg;
+        this.threads = threads;
+    }
+
+    /**
+     * Converts every file in inputs to a Polarion compatible xunit file
+     *
+     * @param inputs the xunit files to convert
+     * @return the outcome of each file, in the same order as inputs
+     */
+    public List<Outcome> convert(List<File> inputs) {
+        // Warm up everything the workers share before they start, so they don't all race to build it
+        MappingIndex.load(new File(this.cfg.getMapping()), this.cfg.getProject());
+        JAXBRegistry.schema(Testsuites.class);
+        JAXBRegistry.context(Testsuites.class);
+        JAXBRegistry.context(Testsuite.class);
+
+        ReportMetrics metrics = new ReportMetrics();
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        List<Outcome> outcomes;
+        try {
+            outcomes = pool.submit(() -> inputs.parallelStream()
+                    .map(f -> this.convert(f, metrics))
+                    .collect(Collectors.toList()))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XMLMarshallError("Interrupted while converting xunit files", e);
+        } catch (ExecutionException e) {
+            throw new XMLMarshallError("Could not convert xunit files", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        metrics.publish(null, null);
+        return outcomes;
+    }
+
+    private Outcome convert(File input, ReportMetrics metrics) {
+        long start = System.currentTimeMillis();
+        XUnitConfig fileCfg = new XUnitConfig(this.cfg);
+        fileCfg.setCurrentXUnit(input.toString());
+        try {
+            Optional<File> output = XUnitReporter.createPolarionXunit(fileCfg, metrics);
+            String out = output.map(File::toString).orElse(null);
+            return new Outcome(input.toString(), out, null, System.currentTimeMillis() - start);
+        } catch (Error | RuntimeException e) {
+            String err = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+            logger.error(String.format("Could not convert %s: %s", input, err));
+            return new Outcome(input.toString(), null, err, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Prints one line per file and the totals
+     *
+     * @param outcomes as returned by convert
+     * @return the number of files that failed
+     */
+    public static long summarize(List<Outcome> outcomes) {
+        outcomes.forEach(o -> {
+            if (o.succeeded())
+                System.out.printf("OK    %s -> %s (%d ms)%n", o.input, o.output, o.millis);
+            else
+                System.out.printf("FAIL  %s: %s (%d ms)%n", o.input, o.error, o.millis);
+        });
+        long failed = outcomes.stream().filter(o -> !o.succeeded()).count();
+        System.out.printf("Converted %d of %d xunit files, %d failed%n", outcomes.size() - failed, outcomes.size(),
+                failed);
+        return failed;
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.redhatqe.polarizer.reporter;
 
+import com.github.redhatqe.polarizer.reporter.configuration.ReportInfo;
 import com.github.redhatqe.polarizer.reporter.configuration.Serializer;
 import com.github.redhatqe.polarizer.reporter.configuration.XUnitInfo;
 import com.github.redhatqe.polarizer.reporter.configuration.data.XUnitConfig;
@@ -7,23 +8,39 @@ import com.github.redhatqe.polarizer.reporter.exceptions.*;
 import com.github.redhatqe.polarizer.reporter.jaxb.IJAXBHelper;
 import com.github.redhatqe.polarizer.reporter.jaxb.JAXBHelper;
 import com.github.redhatqe.polarizer.reporter.jaxb.JAXBReporter;
+import com.github.redhatqe.polarizer.reporter.jaxb.SchemaValidator;
+import com.github.redhatqe.polarizer.reporter.mapping.MappingCompiler;
+import com.github.redhatqe.polarizer.reporter.mapping.MappingIndex;
+import com.github.redhatqe.polarizer.reporter.mapping.MappingSharder;
+import com.github.redhatqe.polarizer.reporter.mapping.MethodKeys;
+import com.github.redhatqe.polarizer.reporter.model.CompactTestcase;
+import com.github.redhatqe.polarizer.reporter.model.CompactTestsuite;
+import com.github.redhatqe.polarizer.reporter.model.PropertyNames;
+import com.github.redhatqe.polarizer.reporter.metrics.ReportMetrics;
+import com.github.redhatqe.polarizer.reporter.metrics.ReportMetrics.Phase;
+import com.github.redhatqe.polarizer.reporter.stream.RootElementSniffer;
+import com.github.redhatqe.polarizer.reporter.stream.XUnitSplitter;
+import com.github.redhatqe.polarizer.reporter.stream.XUnitTransformer;
+import com.github.redhatqe.polarizer.reporter.stream.XUnitWriter;
 import com.github.redhatqe.polarizer.reporter.utils.FileHelper;
 import com.github.redhatqe.polarizer.reporter.utils.Tuple;
 import com.github.redhatqe.polarizer.reporter.importer.xunit.*;
-import com.github.redhatqe.polarizer.reporter.importer.xunit.Error;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 import org.testng.*;
-import org.testng.xml.XmlClass;
 import org.testng.xml.XmlSuite;
 import org.testng.xml.XmlTest;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.*;
+import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -49,6 +66,8 @@ public class XUnitReporter implements IReporter {
     private final static File defaultPropertyFile =
             new File(System.getProperty("user.home") + "/.polarize/reporter.properties");
     private static List<String> failedSuites = new ArrayList<>();
+    // The property names of every testcase built by createTestcase
+    private final static PropertyNames propertyNames = new PropertyNames();
 
     public final static String templateId = "polarion-testrun-template-id";
     public final static String testrunId = "polarion-testrun-id";
@@ -60,8 +79,6 @@ public class XUnitReporter implements IReporter {
     public final static String polarionProjectId = "polarion-project-id";
     public final static String polarionUserId = "polarion-user-id";
 
-    private File bad = new File("/tmp/bad-tests.txt");
-
     public static void setXUnitConfig(String path) throws IOException {
         if (path == null || path.equals(""))
             return;
@@ -163,17 +180,25 @@ public class XUnitReporter implements IReporter {
         return props;
     }
 
-    public void setTestSuiteResults(Testsuite ts, FullResult fr, ITestContext ctx) {
+    /**
+     * Sets the tests, failures, errors and skipped attributes of a &lt;testsuite&gt;
+     *
+     * @param ts the Testsuite to set
+     * @param fr the results of the invocations in the testsuite
+     * @param ctx the &lt;test&gt; the testsuite was built from
+     * @return the counts that were written into the testsuite, or null if fr is null
+     */
+    public ResultAccumulator setTestSuiteResults(Testsuite ts, ResultAccumulator fr, ITestContext ctx) {
         if (fr == null)
-            return;
+            return null;
 
-        if (fr.total != fr.fails + fr.errors + fr.skips + fr.passes) {
+        if (fr.getTotal() != fr.getFails() + fr.getErrors() + fr.getSkips() + fr.getPasses()) {
             String e = "Total number of tests run != fails + errors + skips + passes\n";
             String v = "                       %d !=    %d +     %d +    %d +     %d\n";
-            v = String.format(v, fr.total, fr.fails, fr.errors, fr.skips, fr.passes);
+            v = String.format(v, fr.getTotal(), fr.getFails(), fr.getErrors(), fr.getSkips(), fr.getPasses());
             System.err.println(e + v);
         }
-        int numErrors = fr.errorsByMethod.size();
+        int numErrors = fr.getErrorsByMethod().size();
 
 
         // The iterations feature of Polarion means that we don't need to specify how many times a permutation of a
@@ -189,40 +214,83 @@ public class XUnitReporter implements IReporter {
         ts.setFailures(Integer.toString(numFails));
         ts.setSkipped(Integer.toString(numSkips));
         ts.setTests(Integer.toString(numTotal));
+        return ResultAccumulator.of(numTotal, numFails, numErrors, numSkips).mergeDurations(fr);
     }
 
     /**
      * Creates a xunit file compatible with the Polarion xunit importer service
      *
+     * With the stax writer the file is transformed as it is read by an XUnitTransformer, so memory use does not
+     * depend on the size of the xunit file.  With the jaxb writer the whole file is unmarshalled, modified and
+     * marshalled back out.
+     *
      * @param cfg contains arguments needed to convert xunit to polarion compatible xunit
      * @return a new File that is compatible
      */
     public static Optional<File> createPolarionXunit(XUnitConfig cfg) {
+        Optional<File> newXunit = XUnitReporter.createPolarionXunit(cfg, ReportMetrics.current());
+        ReportMetrics.finish(newXunit.orElse(null), null);
+        return newXunit;
+    }
+
+    /**
+     * Same as createPolarionXunit(cfg), but records into metrics owned by the caller, which are left unfinished.  This
+     * lets several conversions (eg of a batch) run at the same time.
+     *
+     * @param cfg contains arguments needed to convert xunit to polarion compatible xunit.  Is modified, so it must
+     *            not be shared with other conversions running at the same time
+     * @param metrics where the phase times and counts of the conversion are added
+     * @return a new File that is compatible
+     */
+    public static Optional<File> createPolarionXunit(XUnitConfig cfg, ReportMetrics metrics) {
         File xunit = new File(cfg.getCurrentXUnit());
         File newXunit = FileHelper.makeTempFile("/tmp", "polarion-xunit-", ".xml", "rw-rw----");
 
-        Map<String, Map<String, IdParams>> mapping = FileHelper.loadMapping(new File(cfg.getMapping()));
         String project = cfg.getProject();
+        MappingIndex mapping;
+        ReportMetrics.Timer mappingTimer = metrics.time(Phase.MAPPING);
+        try {
+            mapping = MappingIndex.load(new File(cfg.getMapping()), project);
+        } finally {
+            mappingTimer.stop();
+        }
         Function<String, IdParams> fn = (qual) -> {
-            Map<String, IdParams> m = mapping.get(qual);
-            if (m != null) {
-                IdParams param = m.get(project);
-                if (param == null)
+            IdParams param = mapping.get(qual, project);
+            if (param == null) {
+                metrics.mappingMiss();
+                if (mapping.contains(qual))
                     throw new MappingError(String.format("Could not find %s -> %s in mapping", qual, project));
-                return param;
-            } else
                 throw new MappingError(String.format("Could not find %s in mapping", qual));
+            }
+            metrics.mappingHit();
+            return param;
         };
 
+        if (cfg.getReport().isStreaming())
+            return XUnitReporter.transformPolarionXunit(cfg, xunit, newXunit, fn, metrics);
+
         JAXBHelper jaxb = new JAXBHelper();
         Optional<Testsuites> maybeSuites;
         Optional<Testsuite> maybeSuite;
-        Testsuite suite;
-        maybeSuites = XUnitReporter.getTestSuitesFromXML(xunit);
+        // Peek at the root element so that the file only gets unmarshalled (and validated) once, whichever shape it has
+        boolean single;
+        ReportMetrics.Timer unmarshalTimer = metrics.time(Phase.UNMARSHAL);
+        try {
+            single = RootElementSniffer.sniff(xunit).equals("testsuite");
+            if (single) {
+                maybeSuite = XUnitReporter.getTestSuiteFromXML(xunit);
+                maybeSuites = maybeSuite.map(s -> new Testsuites());
+            } else {
+                maybeSuite = Optional.empty();
+                maybeSuites = XUnitReporter.getTestSuitesFromXML(xunit);
+            }
+        } finally {
+            unmarshalTimer.stop();
+        }
 
         Consumer<Testcase> tcHdlr = tc -> {
             // Add the properties here
-            String qual = String.format("%s.%s", tc.getClassname(), tc.getName());
+            String qual = MethodKeys.key(tc.getClassname(), tc.getName());
             IdParams param = fn.apply(qual);
             com.github.redhatqe.polarizer.reporter.importer.xunit.Properties props =
                     tc.getProperties();
@@ -230,44 +298,29 @@ public class XUnitReporter implements IReporter {
                 props = new com.github.redhatqe.polarizer.reporter.importer.xunit.Properties();
                 tc.setProperties(props);
             }
-            Property prop = new Property();
-            prop.setName("polarion-testcase-id");
-            prop.setValue(param.id);
-            param.getParameters().forEach(p -> {
-                Property tp = new Property();
-                tp.setName(String.format("polarion-parameter-%s", p));
-                tp.setValue("");
-            });
-            // mapping file wins
-            List<Property> curr = props.getProperty();
-            Boolean noTestCaseId = curr.stream().noneMatch(p -> p.getName().equals(prop.getName()));
-            if (noTestCaseId)
-                curr.add(prop);
-            else {
-                IntStream.range(0, curr.size())
-                        .map(i -> curr.get(i).getName().equals(prop.getName()) ? i : -1)
-                        .filter(x -> x != -1)
-                        .forEach(e -> {
-                            logger.info(String.format("Using mapping.json TestCase ID value of %s", prop.getValue()));
-                            curr.set(e, prop);
-                        });
-            }
+            XUnitReporter.setTestcaseId(props.getProperty(), param);
         };
 
         if (!maybeSuites.isPresent())
             throw new XMLUnmarshallError(String.format("Could not unmarshall %s", xunit));
         Testsuites suites = maybeSuites.get();
-        if (suites.getTestsuite().size() == 0) {
-            maybeSuite = XUnitReporter.getTestSuiteFromXML(xunit);
-            if (!maybeSuite.isPresent())
-                throw new XMLUnmarshallError(String.format("Could not unmarshall %s as a TestSuite.class", xunit));
-            suite = maybeSuite.get();
-            suite.getTestcase().forEach(tcHdlr);
-            suites.getTestsuite().clear();
+        if (single) {
+            Testsuite suite = maybeSuite.get();
+            ReportMetrics.Timer methodsTimer = metrics.time(Phase.METHODS);
+            try {
+                suite.getTestcase().forEach(tcHdlr);
+            } finally {
+                methodsTimer.stop();
+            }
             suites.getTestsuite().add(suite);
         } else {
-            suites.getTestsuite()
-                    .forEach(ts -> ts.getTestcase().forEach(tcHdlr));
+            ReportMetrics.Timer methodsTimer = metrics.time(Phase.METHODS);
+            try {
+                suites.getTestsuite()
+                        .forEach(ts -> ts.getTestcase().forEach(tcHdlr));
+            } finally {
+                methodsTimer.stop();
+            }
         }
 
         com.github.redhatqe.polarizer.reporter.importer.xunit.Properties tsProps = suites.getProperties();
@@ -277,12 +330,72 @@ public class XUnitReporter implements IReporter {
         }
         List<Property> sProps = suites.getProperties().getProperty();
         XUnitReporter.setPropsFromConfig(cfg, sProps);
-        IJAXBHelper.marshaller(suites, newXunit, jaxb.getXSDFromResource(Testsuites.class));
+        XUnitReporter.countEmitted(suites, metrics);
+        XUnitReporter.marshal(suites, newXunit, jaxb.getXSDFromResource(Testsuites.class), metrics);
         cfg.setNewXunit(newXunit.toString());
+        metrics.written(newXunit.length());
 
         return Optional.of(newXunit);
     }
 
+    /**
+     * Streaming version of createPolarionXunit
+     *
+     * @param cfg contains arguments needed to convert xunit to polarion compatible xunit
+     * @param xunit the xunit file to convert
+     * @param newXunit where to write the converted file
+     * @param fn looks up the IdParams of a method, throwing a MappingError if there are none
+     * @param metrics metrics of the current run
+     * @return newXunit
+     */
+    private static Optional<File> transformPolarionXunit(XUnitConfig cfg, File xunit, File newXunit,
+                                                         Function<String, IdParams> fn, ReportMetrics metrics) {
+        XUnitTransformer transformer = new XUnitTransformer(
+                (classname, name, props) -> setTestcaseId(props, fn.apply(MethodKeys.key(classname, name))),
+                props -> XUnitReporter.setPropsFromConfig(cfg, props));
+        ReportMetrics.Timer marshalTimer = metrics.time(Phase.MARSHAL);
+        try {
+            transformer.transform(xunit, newXunit);
+        } catch (IOException | XMLStreamException e) {
+            throw new XMLMarshallError(String.format("Could not transform %s", xunit), e);
+        } finally {
+            marshalTimer.stop();
+        }
+        metrics.testcases(transformer.getTestcaseCount());
+        metrics.properties(transformer.getPropertyCount());
+
+        JAXBHelper jaxb = new JAXBHelper();
+        XUnitReporter.validate(newXunit, jaxb.getXSDFromResource(Testsuites.class), metrics);
+        cfg.setNewXunit(newXunit.toString());
+        metrics.written(newXunit.length());
+        return Optional.of(newXunit);
+    }
+
+    /**
+     * Adds the polarion-testcase-id from the mapping file to the properties of a testcase.  If the testcase already
+     * has one, the mapping file wins.
+     *
+     * @param curr the properties of the testcase
+     * @param param the IdParams of the testcase from the mapping file
+     */
+    private static void setTestcaseId(List<Property> curr, IdParams param) {
+        Property prop = new Property();
+        prop.setName("polarion-testcase-id");
+        prop.setValue(param.id);
+        Boolean noTestCaseId = curr.stream().noneMatch(p -> p.getName().equals(prop.getName()));
+        if (noTestCaseId)
+            curr.add(prop);
+        else {
+            IntStream.range(0, curr.size())
+                    .map(i -> curr.get(i).getName().equals(prop.getName()) ? i : -1)
+                    .filter(x -> x != -1)
+                    .forEach(e -> {
+                        logger.info(String.format("Using mapping.json TestCase ID value of %s", prop.getValue()));
+                        curr.set(e, prop);
+                    });
+        }
+    }
+
     /**
      * Replaces or adds a Property to the props list
      *
@@ -381,255 +494,484 @@ public class XUnitReporter implements IReporter {
      */
     @Override
     public void generateReport(List<XmlSuite> xmlSuites, List<ISuite> suites, String outputDirectory) {
+        ReportMetrics metrics = ReportMetrics.current();
         String p = System.getProperty("polarize.config");
-        XUnitConfig config = XUnitReporter.getConfig(p);
-        Testsuites tsuites = XUnitReporter.initTestSuiteInfo(config.getXunit().getSelector().getName());
+        XUnitConfig config;
+        Testsuites tsuites;
+        ReportMetrics.Timer configTimer = metrics.time(Phase.CONFIG);
+        try {
+            config = XUnitReporter.getConfig(p);
+            tsuites = XUnitReporter.initTestSuiteInfo(config.getXunit().getSelector().getName());
+        } finally {
+            configTimer.stop();
+        }
         List<Testsuite> tsuite = tsuites.getTestsuite();
 
-        if (this.bad.exists()) {
+        DiagnosticsSink diagnostics = DiagnosticsSink.current();
+
+        // In stax and direct mode each <testsuite> is written out as soon as it is built, so the whole report never
+        // has to be held in memory.  In jaxb mode everything is collected into tsuites and marshalled at the end.
+        File reportPath = new File(outputDirectory + "/testng-polarion.xml");
+        JAXBHelper jaxb = new JAXBHelper();
+        boolean streaming = config.getReport().isStreaming();
+        XUnitWriter writer = null;
+        ResultAccumulator suiteResults = new ResultAccumulator();
+        if (streaming) {
             try {
-                Files.delete(this.bad.toPath());
-            } catch (IOException e) {
-                e.printStackTrace();
+                writer = XUnitWriter.open(reportPath, config.getReport().getWriter());
+                writer.startTestsuites(tsuites);
+            } catch (IOException | XMLStreamException e) {
+                throw new XMLMarshallError(String.format("Could not start writing %s", reportPath), e);
             }
         }
 
-        // Get information for each <testsuite>
-        suites.forEach(suite -> {
-            // suite here for the rhsm-qe tests should only be one occurrence
-            Map<String, ISuiteResult> results = suite.getResults();
-            Map<String, Tuple<FullResult, List<Testcase>>> full = XUnitReporter.getMethodInfo(suite, this.bad);
-            List<Testsuite> collected = results.entrySet().stream()
-                    .map(es -> {
-                        // the results that we iterate through is each <test> element from the suite.xml.  From our
-                        // perspective each <testsuite> is effectively the <test>, and in turn we model each <test>
-                        // as a Class in java
-                        Testsuite ts = new Testsuite();
-                        List<Testcase> tests = ts.getTestcase();
-                        if (tests == null)
-                            tests = new ArrayList<>();
-
-                        String key = es.getKey();
-                        ISuiteResult result = es.getValue();
-                        ITestContext ctx = result.getTestContext();
-                        XmlTest xt = ctx.getCurrentXmlTest();
-                        List<XmlClass> clses = xt.getClasses();
-                        Set<String> clsSet = clses.stream()
-                                .map(x -> {
-                                    String sptCls = x.getSupportClass().toString();
-                                    sptCls = sptCls.replace("class ", "");
-                                    return sptCls;
-                                })
-                                .collect(Collectors.toSet());
-
-                        ts.setName(key);
-                        Date start = ctx.getStartDate();
-                        Date end = ctx.getEndDate();
-                        double duration = (end.getTime() - start.getTime()) / 1000.0;
-                        ts.setTime(Double.toString(duration));
-
-                        // While I suppose it's possible, we should have only one or zero possible results from the map
-                        // so findFirst should return at most 1.  When will we have zero?
-                        List<Tuple<FullResult, List<Testcase>>> frList = full.entrySet().stream()
-                                .filter(e -> {
-                                    String cls = e.getKey();
-                                    return clsSet.contains(cls);
-                                })
-                                .map(Map.Entry::getValue)
-                                .collect(Collectors.toList());
-                        Optional<Tuple<FullResult, List<Testcase>>> maybeFR = frList.stream().findFirst();
-                        Tuple<FullResult, List<Testcase>> tup = maybeFR.orElse(new Tuple<>());
-                        FullResult fr = tup.first;
-                        List<Testcase> tcs = tup.second;
-                        if (tcs != null)
-                            tests.addAll(tcs);
-
-                        setTestSuiteResults(ts, fr, ctx);
-                        if (fr == null) {
-                            //System.out.println(String.format("Skipping test for %s", ctx.toString()));
-                            return null;  // No FullResult due to empty frList.  Will be filtered out
-                        } else
-                            return ts;
-                    })
-                    .filter(Objects::nonNull)  // filter out any suites without FullResult
-                    .collect(Collectors.toList());
-
-            tsuite.addAll(collected);
-        });
+        // Get information for each <testsuite>.  The testcases of each class are built on their own task in pool
+        ForkJoinPool pool = new ForkJoinPool(config.getReport().getThreads());
+        try {
+            for (ISuite suite : suites) {
+                // suite here for the rhsm-qe tests should only be one occurrence
+                Map<String, ISuiteResult> results = suite.getResults();
+
+                // If the XUnitStreamingListener was registered, the testcases were already written out while the
+                // tests ran
+                Map<String, TestcaseSpool> spooled = XUnitStreamingListener.getSpools(suite);
+                if (streaming && spooled != null) {
+                    ReportMetrics.Timer marshalTimer = metrics.time(Phase.MARSHAL);
+                    try {
+                        this.writeSpooled(writer, results, spooled, suiteResults, metrics);
+                        XUnitStreamingListener.release(suite);
+                    } catch (IOException | XMLStreamException e) {
+                        throw new XMLMarshallError(String.format("Could not write spooled testcases to %s",
+                                reportPath), e);
+                    } finally {
+                        marshalTimer.stop();
+                    }
+                    continue;
+                }
+                Map<String, Tuple<ResultAccumulator, List<CompactTestcase>>> full =
+                        XUnitReporter.getMethodInfo(suite, diagnostics, pool);
+                List<Tuple<CompactTestsuite, ResultAccumulator>> collected = results.entrySet().stream()
+                        .map(es -> this.assembleTestsuite(es.getKey(), es.getValue(), full))
+                        .filter(Objects::nonNull)  // filter out any suites without results
+                        .collect(Collectors.toList());
+
+                for (Tuple<CompactTestsuite, ResultAccumulator> tup : collected)
+                    suiteResults.merge(tup.second);
+                if (!streaming) {
+                    collected.forEach(tup -> tsuite.add(tup.first.toTestsuite()));
+                    continue;
+                }
+                ReportMetrics.Timer marshalTimer = metrics.time(Phase.MARSHAL);
+                try {
+                    for (Tuple<CompactTestsuite, ResultAccumulator> tup : collected)
+                        tup.first.write(writer);
+                } catch (XMLStreamException e) {
+                    throw new XMLMarshallError(String.format("Could not write testsuites to %s", reportPath), e);
+                } finally {
+                    marshalTimer.stop();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        DiagnosticsSink.finish(reportPath.getAbsoluteFile().getParentFile());
 
         // Now that we've gone through the suites, let's marshall this into an XML file for the XUnit Importer
-        FullResult suiteResults = getSuiteResults(tsuites);
-        System.out.printf("Error: %d, Failures: %d, Success: %d, Skips: %d%n", suiteResults.errors,
-                suiteResults.fails, suiteResults.passes, suiteResults.skips);
-        File reportPath = new File(outputDirectory + "/testng-polarion.xml");
-        JAXBHelper jaxb = new JAXBHelper();
-        IJAXBHelper.marshaller(tsuites, reportPath, jaxb.getXSDFromResource(Testsuites.class));
+        if (streaming) {
+            ReportMetrics.Timer marshalTimer = metrics.time(Phase.MARSHAL);
+            try {
+                writer.close();
+            } catch (IOException e) {
+                throw new XMLMarshallError(String.format("Could not finish writing %s", reportPath), e);
+            } finally {
+                marshalTimer.stop();
+            }
+            metrics.testcases(writer.getTestcaseCount());
+            metrics.properties(writer.getPropertyCount());
+            XUnitReporter.validate(reportPath, jaxb.getXSDFromResource(Testsuites.class), metrics);
+        } else {
+            XUnitReporter.countEmitted(tsuites, metrics);
+            XUnitReporter.marshal(tsuites, reportPath, jaxb.getXSDFromResource(Testsuites.class), metrics);
+        }
+        metrics.written(reportPath.length());
+        ReportMetrics.finish(reportPath, ReportMetrics.sidecar(reportPath));
+        System.out.printf("Error: %d, Failures: %d, Success: %d, Skips: %d%n", suiteResults.getErrors(),
+                suiteResults.getFails(), suiteResults.getPasses(), suiteResults.getSkips());
+        logger.info(String.format("Test durations (ms) total: %d, min: %d, max: %d", suiteResults.getDurationSum(),
+                suiteResults.getDurationMin(), suiteResults.getDurationMax()));
     }
 
     /**
-     * Sets the status for a Testcase object given values from ITestResult
+     * Writes one &lt;testsuite&gt; per &lt;test&gt; whose testcases were spooled by the XUnitStreamingListener.  Like
+     * assembleTestsuite, the testcases of a &lt;test&gt; are those of its first class that has any.
+     *
+     * @param writer the report being written
+     * @param results the results of the suite, keyed by &lt;test&gt; name
+     * @param spooled the spools for the suite, keyed by class name
+     * @param suiteResults accumulates the totals of every testsuite written
+     * @param metrics counts the testcases and properties copied from the spools
+     */
+    private void writeSpooled(XUnitWriter writer, Map<String, ISuiteResult> results,
+                              Map<String, TestcaseSpool> spooled, ResultAccumulator suiteResults,
+                              ReportMetrics metrics)
+            throws IOException, XMLStreamException {
+        try {
+            for (Map.Entry<String, ISuiteResult> es : results.entrySet()) {
+                ITestContext ctx = es.getValue().getTestContext();
+                TestcaseSpool spool = ctx.getCurrentXmlTest().getClasses().stream()
+                        .map(x -> spooled.get(x.getName()))
+                        .filter(Objects::nonNull)
+                        .findFirst()
+                        .orElse(null);
+                if (spool == null)
+                    continue;  // Nothing that is in the mapping ran in this <test>
+                spool.close();
+                spool.rethrow();
+
+                Testsuite ts = XUnitReporter.createTestsuite(es.getKey(), ctx);
+                suiteResults.merge(setTestSuiteResults(ts, spool.getResult(), ctx));
+                writer.startTestsuite(ts);
+                writer.writeFragment(spool.getFile(), spool.size());
+                writer.endTestsuite(ts);
+                metrics.properties(spool.getPropertyCount());
+            }
+        } finally {
+            // A class can be in more than one <test>, so the spools are only deleted once all of them are written
+            for (TestcaseSpool spool : spooled.values()) {
+                spool.close();
+                spool.delete();
+            }
+        }
+    }
+
+    /**
+     * Marshals a report held in memory, validating it against the xunit schema as it is written
+     *
+     * @param suites the report
+     * @param report where to write it
+     * @param xsd the schema
+     * @param metrics metrics of the current run
+     */
+    private static void marshal(Testsuites suites, File report, URL xsd, ReportMetrics metrics) {
+        ReportMetrics.Timer marshalTimer = metrics.time(Phase.MARSHAL);
+        try {
+            IJAXBHelper.marshaller(suites, report, xsd);
+        } catch (IJAXBHelper.XSDValidationError e) {
+            throw new XMLMarshallError(e.getMessage(), e);
+        } finally {
+            marshalTimer.stop();
+        }
+    }
+
+    /**
+     * Validates a report against the xunit schema, timing it as the validate phase
+     *
+     * @param report the xml file to validate
+     * @param xsd the schema
+     * @param metrics metrics of the current run
+     */
+    private static void validate(File report, URL xsd, ReportMetrics metrics) {
+        SchemaValidator.Report result;
+        ReportMetrics.Timer validateTimer = metrics.time(Phase.VALIDATE);
+        try {
+            result = new SchemaValidator(xsd).validate(report);
+        } finally {
+            validateTimer.stop();
+        }
+        if (!result.valid)
+            throw new XMLMarshallError(result.summary());
+    }
+
+    /**
+     * Counts the testcases and properties of a report that is held in memory
+     */
+    private static void countEmitted(Testsuites suites, ReportMetrics metrics) {
+        long props = suites.getProperties() == null ? 0 : suites.getProperties().getProperty().size();
+        long tcs = 0;
+        for (Testsuite ts : suites.getTestsuite()) {
+            if (ts.getProperties() != null)
+                props += ts.getProperties().getProperty().size();
+            for (Testcase tc : ts.getTestcase()) {
+                tcs++;
+                if (tc.getProperties() != null)
+                    props += tc.getProperties().getProperty().size();
+            }
+        }
+        metrics.testcases(tcs);
+        metrics.properties(props);
+    }
+
+    /**
+     * Builds the Testsuite for one &lt;test&gt; element of the suite.xml
+     *
+     * From our perspective each &lt;testsuite&gt; is effectively the &lt;test&gt;, and in turn we model each
+     * &lt;test&gt; as a Class in java.  So the testcases come from the first class of the &lt;test&gt; that has
+     * results in full.
+     *
+     * @param key name of the &lt;test&gt;
+     * @param result the results of the &lt;test&gt;
+     * @param full map of classname to a tuple of the results and TestCase, as returned by getMethodInfo
+     * @return the testsuite and the counts written into it, or null if none of the classes in the &lt;test&gt; had
+     * results
+     */
+    private Tuple<CompactTestsuite, ResultAccumulator>
+    assembleTestsuite(String key, ISuiteResult result,
+                      Map<String, Tuple<ResultAccumulator, List<CompactTestcase>>> full) {
+        ITestContext ctx = result.getTestContext();
+        Testsuite ts = XUnitReporter.createTestsuite(key, ctx);
+
+        // While I suppose it's possible, we should have only one or zero possible results from the map
+        // so findFirst should return at most 1.  When will we have zero?
+        XmlTest xt = ctx.getCurrentXmlTest();
+        Tuple<ResultAccumulator, List<CompactTestcase>> tup = xt.getClasses().stream()
+                .map(x -> full.get(x.getSupportClass().getName()))
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(new Tuple<>());
+        ResultAccumulator fr = tup.first;
+        List<CompactTestcase> tcs = tup.second;
+
+        ResultAccumulator counts = setTestSuiteResults(ts, fr, ctx);
+        if (fr == null)
+            return null;  // No results since none of the classes ran.  Will be filtered out
+        return new Tuple<>(new CompactTestsuite(ts, tcs), counts);
+    }
+
+    /**
+     * Creates the Testsuite for a &lt;test&gt; with its name and duration set, but no testcases or results
+     */
+    private static Testsuite createTestsuite(String name, ITestContext ctx) {
+        Testsuite ts = new Testsuite();
+        ts.setName(name);
+        Date start = ctx.getStartDate();
+        Date end = ctx.getEndDate();
+        double duration = (end.getTime() - start.getTime()) / 1000.0;
+        ts.setTime(Double.toString(duration));
+        return ts;
+    }
+
+    /**
+     * Sets the status for a CompactTestcase given values from ITestResult
      *
      * @param result
      * @param tc
      */
-    private static void getStatus(ITestResult result, Testcase tc, FullResult fr, String qual) {
+    private static void
+    getStatus(ITestResult result, CompactTestcase tc, ResultAccumulator fr, String qual, FailureCapture capture) {
         Throwable t = result.getThrowable();
         int status = result.getStatus();
-        StringBuilder sb = new StringBuilder();
-        fr.total++;
         switch (status) {
             // Unfortunately, TestNG doesn't distinguish between an assertion failure and an error.  The way to check
             // is if getThrowable() returns non-null
             case ITestResult.FAILURE:
                 if (t != null && !(t instanceof java.lang.AssertionError)) {
-                    fr.errors++;
-                    if (!fr.errorsByMethod.contains(qual))
-                        fr.errorsByMethod.add(qual);
-                    Error err = new Error();
-                    String maybe = t.getMessage();
-                    if (maybe != null) {
-                        String msg = t.getMessage().length() > 128 ? t.getMessage().substring(128) : t.getMessage();
-                        err.setMessage(msg);
-                    } else
-                        err.setMessage("java.lang.NullPointerException");
-                    Arrays.stream(t.getStackTrace()).forEach(st -> sb.append(st.toString()).append("\n"));
-                    err.setContent(sb.toString());
-                    tc.getError().add(err);
+                    fr.errored(qual);
+                    String msg = capture.message(t);
+                    if (msg == null)
+                        msg = "java.lang.NullPointerException";
+                    tc.addError(null, msg, capture.content(t, fr.getTraces(), qual));
                 } else {
-                    fr.fails++;
-                    Failure fail = new Failure();
-                    if (t != null)
-                        fail.setContent(t.getMessage());
-                    tc.getFailure().add(fail);
+                    fr.failed();
+                    tc.addFailure(null, null, t != null ? capture.message(t) : null);
                 }
                 break;
             case ITestResult.SKIP:
-                fr.skips++;
-                tc.setSkipped("true");
+                fr.skipped();
+                tc.setSkipped(true);
                 break;
             case ITestResult.SUCCESS:
-                fr.passes++;
+                fr.passed();
                 break;
             default:
-                if (t != null) {
-                    Error err = new Error();
-                    err.setMessage(t.getMessage().substring(128));
-                    err.setContent(t.getMessage());
-                    tc.getError().add(err);
-                }
+                fr.other();
+                if (t != null)
+                    tc.addError(null, capture.message(t), capture.content(t, fr.getTraces(), qual));
                 break;
         }
     }
 
     public static boolean
-    checkMethInMapping(Map<String, IdParams> inner, String qual, String project, File badMethods) {
-        boolean in = true;
-        if (inner == null || !inner.containsKey(project)) {
-            String err = String.format("%s does not exist in mapping file for Project %s \n", qual, project);
-            logger.error(err);
-            try {
-                FileWriter badf = new FileWriter(badMethods, true);
-                BufferedWriter bw = new BufferedWriter(badf);
-                bw.write(err);
-                bw.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            in = false;
-        }
-        return in;
+    checkMethInMapping(Map<String, IdParams> inner, String qual, String project, DiagnosticsSink diagnostics) {
+        return checkMethInMapping(inner != null && inner.containsKey(project), qual, project, diagnostics);
+    }
+
+    /**
+     * Checks that the method has an entry for the project in the shared MappingIndex
+     *
+     * @param index the MappingIndex loaded from the mapping.json file
+     * @param qual the unique name of the method
+     * @param project the Polarion project
+     * @param diagnostics where unmapped methods are recorded
+     * @return the IdParams for the method, or null if there is none
+     */
+    public static IdParams
+    checkMethInMapping(MappingIndex index, String qual, String project, DiagnosticsSink diagnostics) {
+        IdParams ip = index.get(qual, project);
+        if (ip == null)
+            ReportMetrics.current().mappingMiss();
+        else
+            ReportMetrics.current().mappingHit();
+        checkMethInMapping(ip != null, qual, project, diagnostics);
+        return ip;
+    }
+
+    private static boolean
+    checkMethInMapping(boolean mapped, String qual, String project, DiagnosticsSink diagnostics) {
+        if (!mapped)
+            diagnostics.unmapped(qual, project);
+        return mapped;
     }
 
     public FullResult getSuiteResults(Testsuites suites) {
         List<Testsuite> sList = suites.getTestsuite();
         return sList.stream()
-                .reduce(new FullResult(),
-                        (acc, s) -> {
-                            acc.skips += Integer.parseInt(s.getSkipped());
-                            acc.errors += Integer.parseInt(s.getErrors());
-                            acc.fails += Integer.parseInt(s.getFailures());
-                            acc.total += Integer.parseInt(s.getTests());
-                            acc.passes = acc.passes + (acc.total - (acc.skips + acc.errors + acc.fails));
-                            return acc;
-                        },
-                        FullResult::add);
+                .reduce(new FullResult(), XUnitReporter::addSuiteResult, FullResult::add);
+    }
+
+    private static FullResult addSuiteResult(FullResult acc, Testsuite s) {
+        int skips = Integer.parseInt(s.getSkipped());
+        int errors = Integer.parseInt(s.getErrors());
+        int fails = Integer.parseInt(s.getFailures());
+        int total = Integer.parseInt(s.getTests());
+        acc.skips += skips;
+        acc.errors += errors;
+        acc.fails += fails;
+        acc.total += total;
+        acc.passes += Math.max(0, total - (skips + errors + fails));
+        return acc;
     }
 
     /**
      * Gets information from each invoked method in the test suite
      *
+     * The invoked methods are grouped by class first, and then the testcases of each class are built on their own
+     * task in pool, since that is where the mapping lookups and failure capture happen.
+     *
      * @param suite suite that was run by TestNG
-     * @return map of classname to a tuple of the FullResult and TestCase
+     * @param diagnostics where unmapped methods are recorded
+     * @param pool runs the tasks that build the testcases of each class
+     * @return map of classname to a tuple of the results and TestCase
      */
-    private static Map<String, Tuple<FullResult, List<Testcase>>>
-    getMethodInfo(ISuite suite, File badMethods) {
+    private static Map<String, Tuple<ResultAccumulator, List<CompactTestcase>>>
+    getMethodInfo(ISuite suite, DiagnosticsSink diagnostics, ForkJoinPool pool) {
         List<IInvokedMethod> invoked = suite.getAllInvokedMethods();
-        Map<String, Tuple<FullResult, List<Testcase>>> full = new HashMap<>();
+
+        // Load the mapping file once for the whole suite
+        String project = XUnitReporter.config.getProject();
+        String path = XUnitReporter.config.getMapping();
+        File fpath = new File(path);
+        if (!fpath.exists()) {
+            String err = String.format("Could not find mapping file %s", path);
+            XUnitReporter.logger.error(err);
+            throw new MappingError(err);
+        }
+        MappingIndex mapping;
+        ReportMetrics.Timer mappingTimer = ReportMetrics.current().time(Phase.MAPPING);
+        try {
+            mapping = MappingIndex.load(fpath, project);
+        } finally {
+            mappingTimer.stop();
+        }
+        FailureCapture capture = new FailureCapture(XUnitReporter.config.getReport());
+
+        // Keeps the order the methods were invoked in, both across and within classes
+        Map<String, List<IInvokedMethod>> byClass = invoked.stream()
+                .filter(meth -> meth.getTestMethod().isTest())
+                .collect(Collectors.groupingBy(meth -> meth.getTestMethod().getTestClass().getName(),
+                        LinkedHashMap::new, Collectors.toList()));
+        Map<String, Tuple<ResultAccumulator, List<CompactTestcase>>> full;
+        ReportMetrics.Timer methodsTimer = ReportMetrics.current().time(Phase.METHODS);
+        try {
+            full = pool.submit(() -> byClass.entrySet().parallelStream()
+                    .map(e -> new Tuple<>(e.getKey(),
+                            XUnitReporter.walkMethods(e.getValue(), mapping, project, diagnostics, capture)))
+                    .filter(tup -> tup.second != null)
+                    .collect(Collectors.toMap(tup -> tup.first, tup -> tup.second)))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XMLMarshallError("Interrupted while building testcases", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof java.lang.Error)
+                throw (java.lang.Error) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new XMLMarshallError("Could not build testcases", e.getCause());
+        } finally {
+            methodsTimer.stop();
+        }
+        if (mapping.getUnmapped() > 0)
+            logger.info(String.format("%d methods in %s have no entry for %s", mapping.getUnmapped(),
+                    mapping.getPath(), project));
+        logger.info("returning the method getmethodinfo");
+        return full;
+    }
+
+    /**
+     * Builds the testcases for the invoked methods of one class
+     *
+     * @return the results and testcases of the class, or null if none of its methods are in the mapping
+     */
+    private static Tuple<ResultAccumulator, List<CompactTestcase>>
+    walkMethods(List<IInvokedMethod> invoked, MappingIndex mapping, String project, DiagnosticsSink diagnostics,
+                FailureCapture capture) {
+        ResultAccumulator fres = null;
+        List<CompactTestcase> tests = null;
         for (IInvokedMethod meth : invoked) {
             ITestNGMethod fn = meth.getTestMethod();
-            if (!fn.isTest()) {
-                continue;
-            }
-
             ITestClass clz = fn.getTestClass();
             String methname = fn.getMethodName();
             String classname = clz.getName();
 
-            // Load the mapping file
-            String project = XUnitReporter.config.getProject();
-            String path = XUnitReporter.config.getMapping();
-            File fpath = new File(path);
-            if (!fpath.exists()) {
-                String err = String.format("Could not find mapping file %s", path);
-                XUnitReporter.logger.error(err);
-                throw new MappingError(err);
-            }
-            String qual = String.format("%s.%s", classname, methname);
-            Map<String, Map<String, IdParams>> mapping = FileHelper.loadMapping(fpath);
-            Map<String, IdParams> inner = mapping.get(qual);
-
-            if (!checkMethInMapping(inner, qual, project, badMethods)) {
+            String qual = MethodKeys.key(classname, methname);
+            IdParams ip = checkMethInMapping(mapping, qual, project, diagnostics);
+            if (ip == null) {
                 String warn = String.format("%s does not exist in mapping file for Project %s, skipping it",
                         qual, project);
                 logger.warn(warn);
                 continue;
             }
 
-            FullResult fres;
-            Testcase testcase = new Testcase();
-            List<Testcase> tests;
-            if (!full.containsKey(classname)) {
-                fres = new FullResult();
+            if (fres == null) {
+                fres = new ResultAccumulator();
                 tests = new ArrayList<>();
-                tests.add(testcase);
-                full.put(classname, new Tuple<>(fres, tests));
-            } else {
-                Tuple<FullResult, List<Testcase>> tup = full.get(classname);
-                fres = tup.first;
-                tests = tup.second;
-                tests.add(testcase);
             }
-            ITestResult result = meth.getTestResult();
-            Double millis = (result.getEndMillis() - result.getStartMillis()) / 1000.0;
-
-            fres.classname = classname;
-            testcase.setTime(millis.toString());
-            testcase.setName(methname);
-            testcase.setClassname(classname);
-            XUnitReporter.getStatus(result, testcase, fres, qual);
-
-            // Create the <properties> element, and all the child <property> sub-elements from the iteration data.
-            // Gets the IdParams from the mapping.json file which has all the parameter information
-            IdParams ip = inner.get(project);
-            String id = ip.getId();
-            List<String> args = ip.getParameters();
-            Property polarionID = XUnitReporter.createProperty("polarion-testcase-id", id);
-            com.github.redhatqe.polarizer.reporter.importer.xunit.Properties props =
-                    getPropertiesFromMethod(result, args, polarionID);
-            testcase.setProperties(props);
+            tests.add(XUnitReporter.createTestcase(meth.getTestResult(), ip, fres, qual, capture));
         }
-        logger.info("returning the method getmethodinfo");
-        return full;
+        return fres == null ? null : new Tuple<>(fres, tests);
+    }
+
+    /**
+     * Creates the testcase for a single test method invocation, and counts its status
+     *
+     * @param result the result of the invocation
+     * @param ip the IdParams from the mapping.json file for the method
+     * @param fres the results of the class (or &lt;test&gt;) the method belongs to
+     * @param qual the unique name of the method
+     * @param capture how much of any failure gets recorded
+     * @return the CompactTestcase including its polarion-testcase-id and parameter properties
+     */
+    static CompactTestcase createTestcase(ITestResult result, IdParams ip, ResultAccumulator fres, String qual,
+                                          FailureCapture capture) {
+        ITestNGMethod fn = result.getMethod();
+        String methname = fn.getMethodName();
+        String classname = fn.getTestClass().getName();
+        long elapsed = result.getEndMillis() - result.getStartMillis();
+        CompactTestcase testcase = new CompactTestcase(propertyNames, methname, classname, elapsed);
+
+        fres.setClassname(classname);
+        fres.timed(elapsed);
+        XUnitReporter.getStatus(result, testcase, fres, qual, capture);
+
+        // Add the polarion-testcase-id and a property for each of the parameters from the iteration data.
+        // Gets the IdParams from the mapping.json file which has all the parameter information
+        List<String> args = ip.getParameters();
+        String[] values = XUnitReporter.getParameterValues(result, args);
+        testcase.addProperty("polarion-testcase-id", ip.getId());
+        for (int x = 0; x < values.length; x++)
+            testcase.addProperty(args.get(x), values[x]);
+        testcase.trim();
+        return testcase;
     }
 
     /**
@@ -648,6 +990,23 @@ public class XUnitReporter implements IReporter {
         tcProps.add(polarionID);
 
         // Get all the iteration data
+        String[] values = XUnitReporter.getParameterValues(result, args);
+        for (int x = 0; x < values.length; x++) {
+            Property param = new Property();
+            param.setName(args.get(x));
+            param.setValue(values[x]);
+            tcProps.add(param);
+        }
+        return props;
+    }
+
+    /**
+     * @param result the result of a test method invocation
+     * @param args the parameter names from mapping.json for the method
+     * @return the string value of each parameter the method was invoked with, "null" for a null parameter
+     * @throws MappingError if the method was invoked with a different number of parameters than args has
+     */
+    private static String[] getParameterValues(ITestResult result, List<String> args) {
         Object[] params = result.getParameters();
         if (args.size() != params.length) {
             String name = String.format("testname: %s, methodname: %s", result.getTestName(), result.getMethod().getMethodName());
@@ -657,18 +1016,10 @@ public class XUnitReporter implements IReporter {
             logger.error(err);
             throw new MappingError(err);
         }
-        for (int x = 0; x < params.length; x++) {
-            Property param = new Property();
-            param.setName(args.get(x));
-            String p;
-            if (params[x] == null)
-                p = "null";
-            else
-                p = params[x].toString();
-            param.setValue(p);
-            tcProps.add(param);
-        }
-        return props;
+        String[] values = new String[params.length];
+        for (int x = 0; x < params.length; x++)
+            values[x] = params[x] == null ? "null" : params[x].toString();
+        return values;
     }
 
     /**
@@ -871,10 +1222,43 @@ public class XUnitReporter implements IReporter {
         return selector;
     }
 
-    public static void main(String[] args) throws IOException {
+    /**
+     * Converts xunit files to ones the Polarion xunit importer accepts
+     *
+     * @param args the polarizer-xunit config file, and either an xunit file or a directory or glob of xunit files.
+     *             Directories and globs are converted in parallel and a summary is printed at the end.  If the report
+     *             section of the config sets a chunk budget, a single converted file is also split into chunks.
+     *             With compile-mapping as the first argument, compiles a mapping.json file instead (see
+     *             MappingCompiler), and with shard-mapping, splits one into a sharded mapping directory (see
+     *             MappingSharder).
+     */
+    public static void main(String[] args) throws IOException, XMLStreamException {
+        if (args.length > 0 && args[0].equals("compile-mapping")) {
+            MappingCompiler.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("shard-mapping")) {
+            MappingSharder.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         String xargs = args[0];
         XUnitConfig cfg = Serializer.from(XUnitConfig.class, new File(xargs));
+        if (FileHelper.isBatch(args[1])) {
+            List<File> inputs = FileHelper.resolve(args[1]);
+            List<XUnitBatchConverter.Outcome> outcomes = new XUnitBatchConverter(cfg).convert(inputs);
+            if (XUnitBatchConverter.summarize(outcomes) > 0)
+                System.exit(1);
+            return;
+        }
         cfg.setCurrentXUnit(args[1]);
         Optional<File> maybeNew = XUnitReporter.createPolarionXunit(cfg);
+        ReportInfo report = cfg.getReport();
+        if (maybeNew.isPresent() && report.isSplit()) {
+            File xunit = maybeNew.get();
+            XUnitSplitter splitter = new XUnitSplitter(report.getMaxChunkBytes(), report.getMaxChunkTestcases());
+            List<XUnitSplitter.Chunk> chunks = splitter.split(xunit, xunit.getAbsoluteFile().getParentFile());
+            logger.info(String.format("Split %s into %d chunks, listed in %s", xunit, chunks.size(),
+                    XUnitSplitter.manifest(xunit, xunit.getAbsoluteFile().getParentFile())));
+        }
     }
 }
@@ -0,0 +1,200 @@
+package com.github.redhatqe.polarizer.reporter;
+
+import com.github.redhatqe.polarizer.reporter.configuration.data.XUnitConfig;
+import com.github.redhatqe.polarizer.reporter.exceptions.ConfigurationError;
+import com.github.redhatqe.polarizer.reporter.exceptions.MappingError;
+import com.github.redhatqe.polarizer.reporter.exceptions.XMLMarshallError;
+import com.github.redhatqe.polarizer.reporter.mapping.MappingIndex;
+import com.github.redhatqe.polarizer.reporter.mapping.MethodKeys;
+import com.github.redhatqe.polarizer.reporter.metrics.ReportMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.*;
+import org.testng.xml.XmlClass;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Companion listener to the XUnitReporter that converts each test result into a &lt;testcase&gt; as soon as it
+ * finishes rather than walking every invoked method after the suite is done.
+ * <p>
+ * Register it alongside the reporter (eg -listener XUnitStreamingListener,XUnitReporter).  Each result is appended to
+ * a TestcaseSpool for its class, and XUnitReporter.generateReport then only has to splice the spools into the final
+ * testng-polarion.xml.  This only applies when the report writer is stax or direct.  With the jaxb writer the listener
+ * does nothing and the reporter builds the report from the suite results.  It does the same if the config or the
+ * mapping can not be loaded when the suite starts, so the reporter fails on them when it writes the report rather than
+ * the listener stopping the test run.  The spools are kept in the suite's output directory, see TestcaseSpool.
+ * <p>
+ * The report has the same testcases either way.  Only results of methods that were actually invoked are spooled, so
+ * a test skipped because a method it depends on failed is left out, just as it is left out of the invoked methods of
+ * the suite.
+ */
+public class XUnitStreamingListener implements ITestListener, ISuiteListener, IInvokedMethodListener {
+    private final static Logger logger = LoggerFactory.getLogger(XUnitStreamingListener.class);
+    private final static String SPOOL_DIR = "polarion-spool";
+    // Suite name -> class name -> spool.  Static since TestNG creates the reporter and the listener separately
+    private final static Map<String, Map<String, TestcaseSpool>> spools = new ConcurrentHashMap<>();
+
+    private XUnitConfig config;
+    private MappingIndex mapping;
+    private FailureCapture capture;
+    // Results of the test methods that were invoked and have not been recorded yet
+    private final Set<ITestResult> invoked = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * @param suite a suite run by TestNG
+     * @return the spools for each class of the suite, or null if the listener did not spool the suite
+     */
+    public static Map<String, TestcaseSpool> getSpools(ISuite suite) {
+        return spools.get(suite.getName());
+    }
+
+    /**
+     * Forgets the spools of a suite once they have been written into the report
+     *
+     * @param suite a suite run by TestNG
+     */
+    public static void release(ISuite suite) {
+        spools.remove(suite.getName());
+    }
+
+    @Override
+    public void onStart(ISuite suite) {
+        ReportMetrics metrics = ReportMetrics.current();
+        ReportMetrics.Timer configTimer = metrics.time(ReportMetrics.Phase.CONFIG);
+        try {
+            this.config = XUnitReporter.getConfig(System.getProperty("polarize.config"));
+        } catch (ConfigurationError e) {
+            logger.error(String.format("Not spooling suite %s: %s", suite.getName(), e.getMessage()));
+            return;
+        } finally {
+            configTimer.stop();
+        }
+        if (!this.config.getReport().isStreaming())
+            return;
+
+        ReportMetrics.Timer mappingTimer = metrics.time(ReportMetrics.Phase.MAPPING);
+        try {
+            this.mapping = MappingIndex.load(new File(this.config.getMapping()), this.config.getProject());
+        } catch (MappingError e) {
+            logger.error(String.format("Not spooling suite %s: %s", suite.getName(), e.getMessage()));
+            return;
+        } finally {
+            mappingTimer.stop();
+        }
+        this.capture = new FailureCapture(this.config.getReport());
+        spools.put(suite.getName(), new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+
+    }
+
+    @Override
+    public void onStart(ITestContext ctx) {
+
+    }
+
+    @Override
+    public void onFinish(ITestContext ctx) {
+        Map<String, TestcaseSpool> suiteSpools = spools.get(ctx.getSuite().getName());
+        if (suiteSpools == null)
+            return;
+        for (XmlClass xc : ctx.getCurrentXmlTest().getClasses()) {
+            TestcaseSpool spool = suiteSpools.get(xc.getName());
+            if (spool == null)
+                continue;
+            try {
+                spool.flush();
+            } catch (XMLStreamException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void beforeInvocation(IInvokedMethod method, ITestResult result) {
+        if (method.isTestMethod())
+            synchronized (this.invoked) {
+                this.invoked.add(result);
+            }
+    }
+
+    @Override
+    public void afterInvocation(IInvokedMethod method, ITestResult result) {
+
+    }
+
+    @Override
+    public void onTestStart(ITestResult result) {
+
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        this.record(result);
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        this.record(result);
+    }
+
+    @Override
+    public void onTestSkipped(ITestResult result) {
+        this.record(result);
+    }
+
+    @Override
+    public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+        this.record(result);
+    }
+
+    private void record(ITestResult result) {
+        ITestNGMethod fn = result.getMethod();
+        if (!fn.isTest())
+            return;
+        synchronized (this.invoked) {
+            if (!this.invoked.remove(result))
+                return;  // Never invoked, so not one of the invoked methods the report is built from
+        }
+
+        ITestContext ctx = result.getTestContext();
+        Map<String, TestcaseSpool> suiteSpools = spools.get(ctx.getSuite().getName());
+        if (suiteSpools == null)
+            return;  // The report is built from the suite results
+
+        String project = this.config.getProject();
+        String qual = MethodKeys.key(fn);
+        IdParams ip = XUnitReporter.checkMethInMapping(this.mapping, qual, project, DiagnosticsSink.current());
+        if (ip == null)
+            return;  // Already recorded by the DiagnosticsSink
+
+        File dir = new File(ctx.getSuite().getOutputDirectory(), SPOOL_DIR);
+        TestcaseSpool spool = suiteSpools.computeIfAbsent(fn.getTestClass().getName(), name -> {
+            try {
+                return new TestcaseSpool(dir, name, this.config.getReport().getWriter());
+            } catch (IOException | XMLStreamException e) {
+                throw new IllegalStateException(String.format("Could not create spool for %s", name), e);
+            }
+        });
+        try {
+            spool.append(result, ip, qual, this.capture);
+        } catch (XMLStreamException e) {
+            logger.error(String.format("Could not spool %s", qual));
+            e.printStackTrace();
+        } catch (MappingError | XMLMarshallError e) {
+            // Don't fail the test run itself, report it when the xunit file is generated
+            logger.error(e.getMessage());
+            spool.fail(e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.redhatqe.polarizer.reporter.configuration;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.redhatqe.polarizer.reporter.exceptions.InvalidArgumentError;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Settings that control how the xunit report itself is produced (as opposed to what goes into it)
+ */
+public class ReportInfo {
+    public final static String STAX = "stax";
+    public final static String JAXB = "jaxb";
+    public final static String DIRECT = "direct";
+
+    @JsonProperty
+    private String writer;
+    @JsonProperty
+    private Integer threads;
+    @JsonProperty("max-frames")
+    private Integer maxFrames;
+    @JsonProperty("max-message-bytes")
+    private Integer maxMessageBytes;
+    @JsonProperty("cause-depth")
+    private Integer causeDepth;
+    @JsonProperty("dedupe-traces")
+    private Boolean dedupeTraces;
+    @JsonProperty("max-chunk-bytes")
+    private Long maxChunkBytes;
+    @JsonProperty("max-chunk-testcases")
+    private Integer maxChunkTestcases;
+
+    public ReportInfo() {
+        this.writer = STAX;
+        this.threads = Runtime.getRuntime().availableProcessors();
+        this.maxFrames = 64;
+        this.maxMessageBytes = 1024;
+        this.causeDepth = 3;
+        this.dedupeTraces = false;
+        this.maxChunkBytes = 0L;
+        this.maxChunkTestcases = 0;
+    }
+
+    public ReportInfo copy() {
+        ReportInfo ri = new ReportInfo();
+        ri.writer = this.writer;
+        ri.threads = this.threads;
+        ri.maxFrames = this.maxFrames;
+        ri.maxMessageBytes = this.maxMessageBytes;
+        ri.causeDepth = this.causeDepth;
+        ri.dedupeTraces = this.dedupeTraces;
+        ri.maxChunkBytes = this.maxChunkBytes;
+        ri.maxChunkTestcases = this.maxChunkTestcases;
+        return ri;
+    }
+
+    /**
+     * @return how the xunit file gets written.  stax streams each element out as it is produced, direct does the same
+     * but encodes the bytes itself instead of going through an XMLStreamWriter, and jaxb builds the whole Testsuites
+     * tree in memory and marshals it in one go
+     */
+    public String getWriter() {
+        return writer;
+    }
+
+    public void setWriter(String writer) {
+        String[] allowed = {STAX, DIRECT, JAXB};
+        List<String> check = Arrays.asList(allowed);
+        Set<String> allowed_ = new HashSet<>(check);
+        if (!allowed_.contains(writer))
+            throw new InvalidArgumentError("report writer must be one of " + String.join(",", allowed));
+        this.writer = writer;
+    }
+
+    /**
+     * @return the most threads used to assemble the report.  Defaults to the number of available processors
+     */
+    public Integer getThreads() {
+        return threads;
+    }
+
+    public void setThreads(Integer threads) {
+        if (threads == null || threads < 1)
+            throw new InvalidArgumentError("report threads must be at least 1");
+        this.threads = threads;
+    }
+
+    /**
+     * @return the most stack frames written for each throwable in an &lt;error&gt;
+     */
+    public Integer getMaxFrames() {
+        return maxFrames;
+    }
+
+    public void setMaxFrames(Integer maxFrames) {
+        if (maxFrames == null || maxFrames < 0)
+            throw new InvalidArgumentError("report max-frames can not be negative");
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * @return the most bytes kept from the head of an exception or assertion message
+     */
+    public Integer getMaxMessageBytes() {
+        return maxMessageBytes;
+    }
+
+    public void setMaxMessageBytes(Integer maxMessageBytes) {
+        if (maxMessageBytes == null || maxMessageBytes < 0)
+            throw new InvalidArgumentError("report max-message-bytes can not be negative");
+        this.maxMessageBytes = maxMessageBytes;
+    }
+
+    /**
+     * @return how many levels of getCause() are followed when writing a stack trace
+     */
+    public Integer getCauseDepth() {
+        return causeDepth;
+    }
+
+    public void setCauseDepth(Integer causeDepth) {
+        if (causeDepth == null || causeDepth < 0)
+            throw new InvalidArgumentError("report cause-depth can not be negative");
+        this.causeDepth = causeDepth;
+    }
+
+    /**
+     * @return if true, a stack trace is only written in full the first time it is seen in a testsuite, tagged with
+     * its hash, and later occurrences only reference the hash.  Off by default, which writes every trace in full
+     */
+    public Boolean getDedupeTraces() {
+        return dedupeTraces;
+    }
+
+    public void setDedupeTraces(Boolean dedupeTraces) {
+        this.dedupeTraces = dedupeTraces != null && dedupeTraces;
+    }
+
+    /**
+     * @return the most bytes in each of the files a converted xunit file is split into, or 0 for no limit
+     */
+    public Long getMaxChunkBytes() {
+        return maxChunkBytes;
+    }
+
+    public void setMaxChunkBytes(Long maxChunkBytes) {
+        if (maxChunkBytes == null || maxChunkBytes < 0)
+            throw new InvalidArgumentError("report max-chunk-bytes can not be negative");
+        this.maxChunkBytes = maxChunkBytes;
+    }
+
+    /**
+     * @return the most testcases in each of the files a converted xunit file is split into, or 0 for no limit
+     */
+    public Integer getMaxChunkTestcases() {
+        return maxChunkTestcases;
+    }
+
+    public void setMaxChunkTestcases(Integer maxChunkTestcases) {
+        if (maxChunkTestcases == null || maxChunkTestcases < 0)
+            throw new InvalidArgumentError("report max-chunk-testcases can not be negative");
+        this.maxChunkTestcases = maxChunkTestcases;
+    }
+
+    /**
+     * @return true if converted xunit files get split into chunks
+     */
+    @JsonIgnore
+    public boolean isSplit() {
+        return this.maxChunkBytes > 0 || this.maxChunkTestcases > 0;
+    }
+
+    /**
+     * @return true if the report is written one element at a time rather than marshalled from a Testsuites tree
+     */
+    @JsonIgnore
+    public boolean isStreaming() {
+        return !JAXB.equals(this.writer);
+    }
+}
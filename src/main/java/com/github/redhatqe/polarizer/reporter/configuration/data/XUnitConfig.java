@@ -2,6 +2,7 @@ package com.github.redhatqe.polarizer.reporter.configuration.data;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.redhatqe.polarizer.reporter.configuration.ReportInfo;
 import com.github.redhatqe.polarizer.reporter.configuration.ServerInfo;
 import com.github.redhatqe.polarizer.reporter.configuration.XUnitInfo;
 import com.github.redhatqe.polarizer.reporter.configuration.api.IComplete;
@@ -21,6 +22,8 @@ public class XUnitConfig extends BaseConfig implements IComplete<String> {
     private XUnitInfo xunit;
     @JsonProperty
     private String mapping;
+    @JsonProperty
+    private ReportInfo report;
 
     // ==========================================================================
     // 2. Add all fields not belonging to the configuration here
@@ -47,6 +50,7 @@ public class XUnitConfig extends BaseConfig implements IComplete<String> {
     public XUnitConfig() {
         this.servers = new HashMap<>();
         this.completed = new ArrayList<>();
+        this.report = new ReportInfo();
     }
 
     /**
@@ -60,6 +64,7 @@ public class XUnitConfig extends BaseConfig implements IComplete<String> {
         this.mapping = cfg.getMapping();
         this.project = cfg.getProject();
         this.xunit = cfg.getXunit();
+        this.report = cfg.getReport().copy();
     }
 
     public Object deepCopy() {
@@ -68,6 +73,7 @@ public class XUnitConfig extends BaseConfig implements IComplete<String> {
         cfg.mapping = this.getMapping();
         cfg.project = this.getProject();
         cfg.xunit = this.getXunit();
+        cfg.report = this.getReport().copy();
         cfg.completed = this.completed;
         return cfg;
     }
@@ -92,6 +98,14 @@ public class XUnitConfig extends BaseConfig implements IComplete<String> {
         this.xunit = xunit;
     }
 
+    public ReportInfo getReport() {
+        return report;
+    }
+
+    public void setReport(ReportInfo report) {
+        this.report = report == null ? new ReportInfo() : report;
+    }
+
     public String getCurrentXUnit() {
         return currentXUnit;
     }
@@ -0,0 +1,11 @@
+package com.github.redhatqe.polarizer.reporter.exceptions;
+
+public class XMLMarshallError extends Error {
+    public XMLMarshallError(String s) {
+        super(s);
+    }
+
+    public XMLMarshallError(String s, Throwable cause) {
+        super(s, cause);
+    }
+}
@@ -4,4 +4,8 @@ public class XMLUnmarshallError extends Error {
     public XMLUnmarshallError(String s) {
         super(s);
     }
+
+    public XMLUnmarshallError(String s, Throwable cause) {
+        super(s, cause);
+    }
 }
@@ -1,21 +1,15 @@
 package com.github.redhatqe.polarizer.reporter.jaxb;
 
-import org.xml.sax.SAXException;
-
-import javax.xml.XMLConstants;
 import javax.xml.bind.*;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.transform.Source;
-import javax.xml.transform.stream.StreamSource;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 
@@ -27,36 +21,55 @@ public interface IJAXBHelper {
     }
 
     public class XSDValidationError extends Error {
+        private final List<String> problems;
+
         XSDValidationError(String err) {
             super(err);
+            this.problems = Collections.emptyList();
+        }
+
+        XSDValidationError(String err, List<String> problems) {
+            super(String.format("%s%n    %s", err, String.join(String.format("%n    "), problems)));
+            this.problems = problems;
+        }
+
+        /**
+         * @return each violation found, prefixed by the path of the element it was found in
+         */
+        public List<String> getProblems() {
+            return problems;
         }
     }
 
     /**
-     * Generates an XML file given an object and xsd schema
+     * Generates an XML file given an object and xsd schema.  The XML is validated as it is written, so the file does
+     * not have to be read back in to check it.
      *
      * @param t An object whose class is annotated with @XmlRootElement
      * @param xmlpath where to write the generated XML
-     * @param xsdpath the URL to the xsd schema to validate against
+     * @param xsdpath the URL to the xsd schema to validate against, or null to skip validation
      * @param <T> The type we are going to marshall into XML
+     * @throws XSDValidationError listing the path of each element that violates the schema
      */
     static <T> void marshaller(T t, File xmlpath, URL xsdpath) {
+        MarshalValidation validation = new MarshalValidation(MarshalValidation.MAX_PROBLEMS);
         try {
-            JAXBContext jaxbc = JAXBContext.newInstance(t.getClass());
-            Marshaller marshaller = jaxbc.createMarshaller();
-            marshaller.setProperty( Marshaller.JAXB_FORMATTED_OUTPUT, true);
+            Marshaller marshaller = JAXBRegistry.marshaller(t.getClass());
+            if (xsdpath != null)
+                validation.attach(marshaller, xsdpath);
             marshaller.marshal(t, xmlpath);
         } catch (JAXBException e) {
-            e.printStackTrace();
+            // Stopping once too many violations were found shows up as an exception too
+            if (validation.getProblems().isEmpty())
+                e.printStackTrace();
         }
 
         if (!xmlpath.exists())
             throw new XMLDescriptonCreationError(String.format("Could not find %s", xmlpath.toString()));
 
-        if (xsdpath != null) {
-            if (!IJAXBHelper.validateXML(xmlpath, xsdpath))
-                throw new XSDValidationError(String.format("Validation failed for %s", xmlpath.toString()));
-        }
+        if (!validation.getProblems().isEmpty())
+            throw new XSDValidationError(String.format("Validation failed for %s", xmlpath.toString()),
+                    validation.getProblems());
     }
 
     /**
@@ -82,9 +95,7 @@ public interface IJAXBHelper {
         try {
             FileInputStream fis = new FileInputStream(xmlpath);
             XMLEventReader rdr = factory.createXMLEventReader(fis);
-            JAXBContext jaxbc = JAXBContext.newInstance(t);
-
-            Unmarshaller um = jaxbc.createUnmarshaller();
+            Unmarshaller um = JAXBRegistry.unmarshaller(t);
             ret = um.unmarshal(rdr, t);
             return Optional.of(ret.getValue());
         } catch (JAXBException | FileNotFoundException | XMLStreamException e) {
@@ -95,25 +106,18 @@ public interface IJAXBHelper {
 
     /**
      * Checks that the XML validates against the Schema, and also that all the required fields have valid
-     * values
+     * values.  Every problem found (up to SchemaValidator.DEFAULT_MAX_PROBLEMS) is printed to stderr.
      *
-     * @return
+     * @return true if the XML is valid
      */
     static Boolean validateXML(File xmlpath, URL xsdPath) {
-        SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-        Schema xsdSchema;
         Boolean returnEmpty = false;
         try {
-            xsdSchema = sf.newSchema(xsdPath);
-            try {
-                javax.xml.validation.Validator v = xsdSchema.newValidator();
-                Source xmlSrc = new StreamSource(xmlpath);
-                v.validate(xmlSrc);
-            } catch (SAXException | IOException e) {
-                System.err.println(e.getMessage());
-                returnEmpty = true;
-            }
-        } catch (SAXException e) {
+            SchemaValidator.Report report = new SchemaValidator(xsdPath).validate(xmlpath);
+            if (!report.problems.isEmpty())
+                System.err.println(report.summary());
+            returnEmpty = !report.valid;
+        } catch (XSDValidationError e) {
             e.printStackTrace();
             returnEmpty = true;
         }
@@ -0,0 +1,180 @@
+package com.github.redhatqe.polarizer.reporter.jaxb;
+
+import com.github.redhatqe.polarizer.reporter.importer.testcase.Testcases;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide cache of JAXBContexts, xsd locations and compiled xsd Schemas, plus per thread pools of the
+ * Marshallers, Unmarshallers and Validators made from them.
+ * <p>
+ * Contexts and Schemas are expensive to build and safe to share between threads, so each one is built the first time
+ * it is needed and reused from then on.  Marshallers, Unmarshallers and Validators are cheaper but not thread safe, so
+ * each thread keeps one of each per class (or xsd) and gets the same instance back every time.  An instance handed out
+ * by the pool must not be used again by the same thread while it is still in use, eg from inside a JAXB callback.
+ */
+public class JAXBRegistry {
+    private final static Map<Class<?>, String> resources = new HashMap<>();
+    private final static Map<Class<?>, JAXBContext> contexts = new ConcurrentHashMap<>();
+    private final static Map<Class<?>, URL> xsds = new ConcurrentHashMap<>();
+    private final static Map<String, Schema> schemas = new ConcurrentHashMap<>();
+    private final static ThreadLocal<Map<Class<?>, Marshaller>> marshallers = ThreadLocal.withInitial(HashMap::new);
+    private final static ThreadLocal<Map<Class<?>, Unmarshaller>> unmarshallers =
+            ThreadLocal.withInitial(HashMap::new);
+    private final static ThreadLocal<Map<String, Validator>> validators = ThreadLocal.withInitial(HashMap::new);
+
+    static {
+        String xunit = "xunit_importers/xunit.xsd";
+        String testcase = "testcase_importer/testcase-importer.xsd";
+        resources.put(Testsuites.class, xunit);
+        resources.put(Testsuite.class, xunit);
+        resources.put(Testcase.class, xunit);
+        resources.put(Testcases.class, testcase);
+        resources.put(com.github.redhatqe.polarizer.reporter.importer.testcase.Testcase.class, testcase);
+    }
+
+    private JAXBRegistry() {
+
+    }
+
+    /**
+     * @param t a class annotated with @XmlRootElement or @XmlType
+     * @return the shared JAXBContext for t
+     */
+    public static JAXBContext context(Class<?> t) {
+        return contexts.computeIfAbsent(t, c -> {
+            try {
+                return JAXBContext.newInstance(c);
+            } catch (JAXBException e) {
+                throw new IJAXBHelper.XMLDescriptonCreationError(
+                        String.format("Could not create JAXBContext for %s: %s", c.getName(), e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * @param t one of the importer model classes
+     * @return the URL of the xsd that t is validated against
+     */
+    public static URL xsd(Class<?> t) {
+        return xsds.computeIfAbsent(t, c -> {
+            String resource = resources.get(c);
+            URL url = resource == null ? null : JAXBRegistry.class.getClassLoader().getResource(resource);
+            if (url == null)
+                throw new IJAXBHelper.XSDValidationError(
+                        String.format("Could not find xsd schema for class %s", c.getName()));
+            return url;
+        });
+    }
+
+    /**
+     * @param xsd the URL of an xsd file
+     * @return the shared compiled Schema for xsd
+     */
+    public static Schema schema(URL xsd) {
+        return schemas.computeIfAbsent(xsd.toString(), k -> {
+            SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            try {
+                return sf.newSchema(xsd);
+            } catch (SAXException e) {
+                throw new IJAXBHelper.XSDValidationError(
+                        String.format("Could not compile schema %s: %s", xsd, e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * @param t one of the importer model classes
+     * @return the shared compiled Schema that t is validated against
+     */
+    public static Schema schema(Class<?> t) {
+        return JAXBRegistry.schema(JAXBRegistry.xsd(t));
+    }
+
+    /**
+     * @param t a class annotated with @XmlRootElement
+     * @return this thread's Marshaller for t, set up for formatted output with no schema, event handler or listener
+     */
+    public static Marshaller marshaller(Class<?> t) {
+        Marshaller m = marshallers.get().computeIfAbsent(t, c -> {
+            try {
+                Marshaller created = JAXBRegistry.context(c).createMarshaller();
+                created.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+                return created;
+            } catch (JAXBException e) {
+                throw new IJAXBHelper.XMLDescriptonCreationError(
+                        String.format("Could not create Marshaller for %s: %s", c.getName(), e.getMessage()));
+            }
+        });
+        try {
+            m.setSchema(null);
+            m.setEventHandler(null);
+            m.setListener(null);
+        } catch (JAXBException e) {
+            throw new IJAXBHelper.XMLDescriptonCreationError(
+                    String.format("Could not reset Marshaller for %s: %s", t.getName(), e.getMessage()));
+        }
+        return m;
+    }
+
+    /**
+     * @param t a class annotated with @XmlRootElement or @XmlType
+     * @return this thread's Unmarshaller for t, with no schema or event handler
+     */
+    public static Unmarshaller unmarshaller(Class<?> t) {
+        Unmarshaller um = unmarshallers.get().computeIfAbsent(t, c -> {
+            try {
+                return JAXBRegistry.context(c).createUnmarshaller();
+            } catch (JAXBException e) {
+                throw new IJAXBHelper.XMLDescriptonCreationError(
+                        String.format("Could not create Unmarshaller for %s: %s", c.getName(), e.getMessage()));
+            }
+        });
+        try {
+            um.setSchema(null);
+            um.setEventHandler(null);
+        } catch (JAXBException e) {
+            throw new IJAXBHelper.XMLDescriptonCreationError(
+                    String.format("Could not reset Unmarshaller for %s: %s", t.getName(), e.getMessage()));
+        }
+        return um;
+    }
+
+    /**
+     * @param xsd the URL of an xsd file
+     * @return this thread's Validator for xsd, reset to the state it was created in
+     */
+    public static Validator validator(URL xsd) {
+        Validator v = validators.get().computeIfAbsent(xsd.toString(), k -> JAXBRegistry.schema(xsd).newValidator());
+        v.reset();
+        return v;
+    }
+
+    /**
+     * Drops the shared contexts and schemas, and the calling thread's pools.  Other threads keep the instances they
+     * have already pooled.
+     */
+    public static void clear() {
+        contexts.clear();
+        xsds.clear();
+        schemas.clear();
+        marshallers.remove();
+        unmarshallers.remove();
+        validators.remove();
+    }
+}
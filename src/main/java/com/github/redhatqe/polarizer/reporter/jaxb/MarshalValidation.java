@@ -0,0 +1,112 @@
+package com.github.redhatqe.polarizer.reporter.jaxb;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.ValidationEvent;
+import javax.xml.bind.ValidationEventHandler;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Collects the schema violations found while a Marshaller with a Schema set writes an object out, so a document can be
+ * written and validated in one pass instead of being read back in from disk.
+ * <p>
+ * As a Marshaller.Listener it keeps the stack of objects being marshalled, and as a ValidationEventHandler it records
+ * each violation along with the path of the element it was found in, eg
+ * /testsuites/testsuite[@name='Smoke']/testcase[@name='testLogin']/properties/property[@name='polarion-testcase-id'].
+ * Once max violations have been seen the marshalling is stopped.
+ */
+class MarshalValidation extends Marshaller.Listener implements ValidationEventHandler {
+    final static int MAX_PROBLEMS = 100;
+
+    private final Deque<Object> open = new ArrayDeque<>();
+    private final List<String> problems = new ArrayList<>();
+    private final int max;
+
+    MarshalValidation(int max) {
+        this.max = max;
+    }
+
+    /**
+     * Sets the schema, this handler and this listener on m
+     */
+    void attach(Marshaller m, URL xsd) throws JAXBException {
+        m.setSchema(JAXBRegistry.schema(xsd));
+        m.setEventHandler(this);
+        m.setListener(this);
+    }
+
+    @Override
+    public void beforeMarshal(Object source) {
+        this.open.push(source);
+    }
+
+    @Override
+    public void afterMarshal(Object source) {
+        this.open.pop();
+    }
+
+    @Override
+    public boolean handleEvent(ValidationEvent event) {
+        String line = "";
+        if (event.getLocator() != null && event.getLocator().getLineNumber() > 0)
+            line = String.format(" (line %d)", event.getLocator().getLineNumber());
+        this.problems.add(String.format("%s: %s%s", this.path(), event.getMessage(), line));
+        // Anything other than a schema violation means the output can't be trusted, so stop right away
+        return event.getSeverity() != ValidationEvent.FATAL_ERROR && this.problems.size() < this.max;
+    }
+
+    List<String> getProblems() {
+        return Collections.unmodifiableList(this.problems);
+    }
+
+    /**
+     * @return the path of the element currently being marshalled
+     */
+    private String path() {
+        if (this.open.isEmpty())
+            return "/";
+        StringBuilder sb = new StringBuilder();
+        Object previous = null;
+        for (Iterator<Object> it = this.open.descendingIterator(); it.hasNext(); ) {
+            Object o = it.next();
+            // The root object is reported once as the document and once as its element
+            if (o == previous)
+                continue;
+            previous = o;
+            sb.append('/').append(MarshalValidation.element(o));
+            String name = MarshalValidation.name(o);
+            if (name != null)
+                sb.append("[@name='").append(name).append("']");
+        }
+        return sb.toString();
+    }
+
+    private static String element(Object o) {
+        XmlRootElement root = o.getClass().getAnnotation(XmlRootElement.class);
+        if (root != null && !root.name().equals("##default"))
+            return root.name();
+        String simple = o.getClass().getSimpleName();
+        return Character.toLowerCase(simple.charAt(0)) + simple.substring(1);
+    }
+
+    /**
+     * @return the name attribute of o if it has one, since that is what tells testsuites, testcases and properties apart
+     */
+    private static String name(Object o) {
+        try {
+            Method getName = o.getClass().getMethod("getName");
+            Object name = getName.invoke(o);
+            return name instanceof String ? (String) name : null;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.github.redhatqe.polarizer.reporter.jaxb;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.redhatqe.polarizer.reporter.exceptions.InvalidArgumentError;
+import com.github.redhatqe.polarizer.reporter.exceptions.XMLMarshallError;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+import com.github.redhatqe.polarizer.reporter.utils.FileHelper;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Validates xml files against an xsd and reports every problem found rather than just the first one.
+ * <p>
+ * Each problem comes with its line and column and the path of the element it was found in, eg
+ * /testsuites/testsuite[@name='Smoke']/testcase[@name='testLogin']/properties.  Once maxProblems problems have been
+ * found in a file, the rest of it is skipped and its report is marked as truncated.  The compiled Schema is shared, so
+ * any number of files can be validated at the same time.
+ */
+public class SchemaValidator {
+    public final static int DEFAULT_MAX_PROBLEMS = 100;
+    private final static ThreadLocal<SAXParserFactory> parsers = ThreadLocal.withInitial(() -> {
+        SAXParserFactory f = SAXParserFactory.newInstance();
+        f.setNamespaceAware(true);
+        return f;
+    });
+
+    private final URL xsd;
+    private final Schema schema;
+    private final int maxProblems;
+
+    /**
+     * One schema violation or parse error
+     */
+    public static class Problem {
+        @JsonProperty
+        public final String severity;
+        @JsonProperty
+        public final int line;
+        @JsonProperty
+        public final int column;
+        @JsonProperty
+        public final String path;
+        @JsonProperty
+        public final String message;
+
+        Problem(String severity, int line, int column, String path, String message) {
+            this.severity = severity;
+            this.line = line;
+            this.column = column;
+            this.path = path;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %d:%d %s: %s", this.severity, this.line, this.column, this.path, this.message);
+        }
+    }
+
+    /**
+     * What validating one file found
+     */
+    public static class Report {
+        @JsonProperty
+        public final String file;
+        @JsonProperty
+        public final boolean valid;
+        @JsonProperty
+        public final boolean truncated;
+        @JsonProperty
+        public final long millis;
+        @JsonProperty
+        public final List<Problem> problems;
+
+        Report(String file, boolean truncated, long millis, List<Problem> problems) {
+            this.file = file;
+            this.valid = problems.stream().allMatch(p -> p.severity.equals("warning"));
+            this.truncated = truncated;
+            this.millis = millis;
+            this.problems = Collections.unmodifiableList(problems);
+        }
+
+        /**
+         * @return a message naming the file and listing each of its problems on a line of its own
+         */
+        public String summary() {
+            StringBuilder sb = new StringBuilder(String.format("%s %s with %d problems%s", this.file,
+                    this.valid ? "is valid" : "failed validation", this.problems.size(),
+                    this.truncated ? " (stopped looking after that)" : ""));
+            this.problems.forEach(p -> sb.append(String.format("%n    %s", p)));
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Thrown to stop parsing once enough problems were found
+     */
+    private static class Enough extends SAXException {
+        Enough() {
+            super("too many problems");
+        }
+    }
+
+    /**
+     * Sits between the parser and the ValidatorHandler, keeping track of the open elements so that the problems
+     * reported by either of them can be given a path
+     */
+    private static class Tracker extends XMLFilterImpl {
+        private final Deque<String> open = new ArrayDeque<>();
+        private final List<Problem> problems = new ArrayList<>();
+        private final int max;
+
+        Tracker(int max) {
+            this.max = max;
+        }
+
+        @Override
+        public void startElement(String uri, String local, String qName, Attributes atts) throws SAXException {
+            String name = atts.getValue("name");
+            this.open.push(name == null ? local : String.format("%s[@name='%s']", local, name));
+            super.startElement(uri, local, qName, atts);
+        }
+
+        @Override
+        public void endElement(String uri, String local, String qName) throws SAXException {
+            super.endElement(uri, local, qName);
+            this.open.pop();
+        }
+
+        @Override
+        public void warning(SAXParseException e) throws SAXException {
+            this.add("warning", e);
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            this.add("error", e);
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            this.add("fatal", e);
+            throw e;
+        }
+
+        void add(String severity, SAXParseException e) throws SAXException {
+            // The validator can report the same violation more than once, eg a missing attribute
+            if (!this.problems.isEmpty()) {
+                Problem last = this.problems.get(this.problems.size() - 1);
+                if (last.line == e.getLineNumber() && last.column == e.getColumnNumber()
+                        && last.message.equals(e.getMessage()))
+                    return;
+            }
+            this.problems.add(new Problem(severity, e.getLineNumber(), e.getColumnNumber(), this.path(),
+                    e.getMessage()));
+            if (this.problems.size() >= this.max)
+                throw new Enough();
+        }
+
+        private String path() {
+            if (this.open.isEmpty())
+                return "/";
+            StringBuilder sb = new StringBuilder();
+            for (Iterator<String> it = this.open.descendingIterator(); it.hasNext(); )
+                sb.append('/').append(it.next());
+            return sb.toString();
+        }
+    }
+
+    public SchemaValidator(URL xsd) {
+        this(xsd, DEFAULT_MAX_PROBLEMS);
+    }
+
+    /**
+     * @param xsd the schema to validate against
+     * @param maxProblems how many problems to collect from a file before giving up on the rest of it
+     */
+    public SchemaValidator(URL xsd, int maxProblems) {
+        if (maxProblems < 1)
+            throw new InvalidArgumentError("maxProblems must be at least 1");
+        this.xsd = xsd;
+        this.schema = JAXBRegistry.schema(xsd);
+        this.maxProblems = maxProblems;
+    }
+
+    /**
+     * @param xml the file to validate
+     * @return every problem found in the file, up to maxProblems
+     */
+    public Report validate(File xml) {
+        long start = System.currentTimeMillis();
+        Tracker tracker = new Tracker(this.maxProblems);
+        boolean truncated = false;
+        try {
+            ValidatorHandler vh = this.schema.newValidatorHandler();
+            vh.setErrorHandler(tracker);
+            XMLReader reader = parsers.get().newSAXParser().getXMLReader();
+            tracker.setParent(reader);
+            tracker.setContentHandler(vh);
+            tracker.parse(new InputSource(xml.toURI().toString()));
+        } catch (Enough e) {
+            truncated = true;
+        } catch (SAXParseException e) {
+            // Already recorded by fatalError, unless it was thrown by something other than the parser
+            if (tracker.problems.stream().noneMatch(p -> p.severity.equals("fatal")))
+                tracker.problems.add(new Problem("fatal", e.getLineNumber(), e.getColumnNumber(), tracker.path(),
+                        e.getMessage()));
+        } catch (SAXException | IOException | ParserConfigurationException e) {
+            tracker.problems.add(new Problem("fatal", 0, 0, tracker.path(), e.getMessage()));
+        }
+        return new Report(xml.toString(), truncated, System.currentTimeMillis() - start, tracker.problems);
+    }
+
+    /**
+     * Validates several files at the same time
+     *
+     * @param files the files to validate
+     * @param threads how many files to validate at once
+     * @return the report of each file, in the same order as files
+     */
+    public List<Report> validate(List<File> files, int threads) {
+        if (threads < 1)
+            throw new InvalidArgumentError("threads must be at least 1");
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> files.parallelStream()
+                    .map(this::validate)
+                    .collect(Collectors.toList()))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XMLMarshallError("Interrupted while validating xml files", e);
+        } catch (ExecutionException e) {
+            throw new XMLMarshallError("Could not validate xml files", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public URL getXsd() {
+        return xsd;
+    }
+
+    /**
+     * Validates xunit files from the command line and prints the reports as json
+     *
+     * @param args optionally --max-problems N and --threads N, followed by the xunit files, directories or globs to
+     *             validate
+     */
+    public static void main(String[] args) throws IOException {
+        int max = DEFAULT_MAX_PROBLEMS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--max-problems"))
+                max = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--threads"))
+                threads = Integer.parseInt(args[++i]);
+            else if (FileHelper.isBatch(args[i]))
+                files.addAll(FileHelper.resolve(args[i]));
+            else
+                files.add(new File(args[i]));
+        }
+
+        SchemaValidator validator = new SchemaValidator(JAXBRegistry.xsd(Testsuites.class), max);
+        List<Report> reports = validator.validate(files, threads);
+        ObjectMapper mapper = new ObjectMapper();
+        System.out.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(reports));
+        if (reports.stream().anyMatch(r -> !r.valid))
+            System.exit(1);
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.redhatqe.polarizer.reporter.mapping;
+
+import com.github.redhatqe.polarizer.reporter.IdParams;
+import com.github.redhatqe.polarizer.reporter.exceptions.MappingError;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A mapping file compiled by MappingCompiler, read through a read-only MappedByteBuffer.
+ * <p>
+ * Opening one only maps the file, so it costs next to nothing however many methods it has, and every JVM that opens
+ * the same file shares its pages through the page cache.  The IdParams of a method are decoded the first time the
+ * method is looked up and kept from then on.  All ints are big endian and all positions are from the start of the
+ * file:
+ *
+ * <pre>
+ *     header   "PMAP", version, string count, method count, slot count, and the positions of the four sections
+ *     offsets  (strings + 1) ints, where string i is the UTF-8 bytes from offsets[i] to offsets[i + 1] of the data
+ *     data     the UTF-8 bytes of every distinct string, sorted so the same mapping.json always compiles the same way
+ *     slots    an open addressing hash table of (key hash, method string, record position), with method string -1
+ *              for an empty slot and linear probing
+ *     records  for each method: project count, then per project the project string, id string, parameter count
+ *              (-1 when the mapping has no parameters) and the parameter strings
+ * </pre>
+ */
+class CompiledMapping implements MappingSource {
+    final static byte[] MAGIC = {'P', 'M', 'A', 'P'};
+    final static int VERSION = 1;
+    final static int HEADER = 36;
+    final static int SLOT = 12;
+    final static int EMPTY = -1;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int strings;
+    private final int methods;
+    private final int slots;
+    private final int offsetsPos;
+    private final int dataPos;
+    private final int slotsPos;
+    private final Map<String, Map<String, IdParams>> decoded = new ConcurrentHashMap<>();
+
+    private CompiledMapping(File file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        byte[] magic = new byte[MAGIC.length];
+        if (buffer.capacity() < HEADER)
+            throw this.corrupt("it is too short");
+        buffer.duplicate().get(magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw this.corrupt("it is not a compiled mapping file");
+        int version = buffer.getInt(4);
+        if (version != VERSION)
+            throw this.corrupt(String.format("it is version %d, but only version %d can be read", version, VERSION));
+        this.strings = buffer.getInt(8);
+        this.methods = buffer.getInt(12);
+        this.slots = buffer.getInt(16);
+        this.offsetsPos = buffer.getInt(20);
+        this.dataPos = buffer.getInt(24);
+        this.slotsPos = buffer.getInt(28);
+        int recordsPos = buffer.getInt(32);
+        if (Integer.bitCount(this.slots) != 1 || this.slots < this.methods
+                || this.slotsPos + (long) this.slots * SLOT > recordsPos || recordsPos > buffer.capacity())
+            throw this.corrupt("its header is inconsistent");
+    }
+
+    /**
+     * @param file a file written by MappingCompiler
+     * @return the mapping, with nothing decoded yet
+     */
+    static CompiledMapping open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CompiledMapping(file, buffer);
+        }
+    }
+
+    /**
+     * @param file any file
+     * @return true if the file starts with the magic bytes of a compiled mapping
+     */
+    static boolean isCompiled(File file) {
+        if (!file.isFile() || file.length() < HEADER)
+            return false;
+        byte[] magic = new byte[MAGIC.length];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.readFully(magic);
+        } catch (IOException e) {
+            return false;
+        }
+        return Arrays.equals(magic, MAGIC);
+    }
+
+    /**
+     * The hash of a method key, shared with MappingCompiler.  String.hashCode is specified by the JLS, so it is the
+     * same in every JVM.
+     */
+    static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public Map<String, IdParams> get(String qual) {
+        Map<String, IdParams> found = this.decoded.get(qual);
+        if (found != null)
+            return found;
+        int record = this.find(qual);
+        if (record == EMPTY)
+            return null;
+        return this.decoded.computeIfAbsent(qual, k -> this.record(record));
+    }
+
+    @Override
+    public int size() {
+        return this.methods;
+    }
+
+    /**
+     * @return the position of the record of qual, or EMPTY if the mapping does not have it
+     */
+    private int find(String qual) {
+        int h = hash(qual);
+        byte[] key = null;
+        int mask = this.slots - 1;
+        for (int i = h & mask, probes = 0; probes < this.slots; i = (i + 1) & mask, probes++) {
+            int pos = this.slotsPos + i * SLOT;
+            int str = this.buffer.getInt(pos + 4);
+            if (str == EMPTY)
+                return EMPTY;
+            if (this.buffer.getInt(pos) != h)
+                continue;
+            if (key == null)
+                key = qual.getBytes(StandardCharsets.UTF_8);
+            if (this.matches(str, key))
+                return this.buffer.getInt(pos + 8);
+        }
+        return EMPTY;
+    }
+
+    private boolean matches(int str, byte[] key) {
+        int start = this.start(str);
+        if (this.start(str + 1) - start != key.length)
+            return false;
+        for (int i = 0; i < key.length; i++)
+            if (this.buffer.get(this.dataPos + start + i) != key[i])
+                return false;
+        return true;
+    }
+
+    private Map<String, IdParams> record(int pos) {
+        int projects = this.buffer.getInt(pos);
+        pos += 4;
+        Map<String, IdParams> inner = new HashMap<>(projects * 4 / 3 + 1);
+        for (int p = 0; p < projects; p++) {
+            String project = this.string(this.buffer.getInt(pos));
+            String id = this.string(this.buffer.getInt(pos + 4));
+            int count = this.buffer.getInt(pos + 8);
+            pos += 12;
+            List<String> params = null;
+            if (count >= 0) {
+                String[] values = new String[count];
+                for (int i = 0; i < count; i++, pos += 4)
+                    values[i] = this.string(this.buffer.getInt(pos));
+                params = Collections.unmodifiableList(Arrays.asList(values));
+            }
+            inner.put(project, new IdParams(id, params));
+        }
+        return Collections.unmodifiableMap(inner);
+    }
+
+    private int start(int str) {
+        return this.buffer.getInt(this.offsetsPos + str * 4);
+    }
+
+    private String string(int str) {
+        if (str < 0 || str >= this.strings)
+            throw this.corrupt(String.format("it refers to string %d of %d", str, this.strings));
+        int start = this.start(str);
+        byte[] bytes = new byte[this.start(str + 1) - start];
+        ByteBuffer dup = this.buffer.duplicate();
+        dup.position(this.dataPos + start);
+        dup.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private MappingError corrupt(String why) {
+        return new MappingError(String.format("Could not read compiled mapping %s: %s", this.file, why));
+    }
+}
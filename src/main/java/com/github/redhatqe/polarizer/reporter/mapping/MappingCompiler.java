@@ -0,0 +1,172 @@
+package com.github.redhatqe.polarizer.reporter.mapping;
+
+import com.github.redhatqe.polarizer.reporter.IdParams;
+import com.github.redhatqe.polarizer.reporter.exceptions.InvalidArgumentError;
+import com.github.redhatqe.polarizer.reporter.exceptions.MappingError;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Compiles a mapping.json file into the binary format read by CompiledMapping.
+ * <p>
+ * The reporter opens whichever kind of file the mapping setting points to, so switching to a compiled mapping only
+ * means running
+ *
+ * <pre>
+ *     java -cp reporter.jar com.github.redhatqe.polarizer.reporter.XUnitReporter \
+ *         compile-mapping mapping.json mapping.bin
+ * </pre>
+ *
+ * and pointing mapping at mapping.bin.  The compiled file is written next to its final location and then moved over
+ * it, so JVMs that already have the old file mapped keep reading the old one.
+ */
+public class MappingCompiler {
+    private MappingCompiler() {
+
+    }
+
+    /**
+     * @param json a mapping.json file
+     * @param out where to write the compiled mapping
+     * @return how many methods were compiled
+     */
+    public static int compile(File json, File out) throws IOException {
+        if (!json.exists())
+            throw new MappingError(String.format("Could not find mapping file %s", json));
+        return compile(MappingParser.parse(json), out);
+    }
+
+    /**
+     * @param mapping unique methodname -> project -> IdParams, as read by MappingParser
+     * @param out where to write the compiled mapping
+     * @return how many methods were compiled
+     */
+    public static int compile(Map<String, Map<String, IdParams>> mapping, File out) throws IOException {
+        // The string table, sorted so that the output only depends on the contents of the mapping
+        Set<String> distinct = new HashSet<>();
+        mapping.forEach((qual, projects) -> {
+            distinct.add(qual);
+            projects.forEach((project, ip) -> {
+                distinct.add(project);
+                distinct.add(ip.getId());
+                if (ip.getParameters() != null)
+                    distinct.addAll(ip.getParameters());
+            });
+        });
+        String[] sorted = distinct.toArray(new String[0]);
+        Arrays.sort(sorted);
+        Map<String, Integer> index = new HashMap<>(sorted.length * 4 / 3 + 1);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int[] offsets = new int[sorted.length + 1];
+        int n = 0;
+        for (String s : sorted) {
+            index.put(s, n);
+            offsets[n++] = data.size();
+            data.write(s.getBytes(StandardCharsets.UTF_8));
+        }
+        offsets[n] = data.size();
+
+        // The records, plus the hash table pointing at them.  Record positions are relative until the size of
+        // everything before the records is known
+        int slots = Integer.highestOneBit(Math.max(2, mapping.size() * 2 - 1)) << 1;
+        int[] table = new int[slots * 3];
+        for (int i = 0; i < slots; i++)
+            table[i * 3 + 1] = CompiledMapping.EMPTY;
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream rec = new DataOutputStream(records);
+        for (String qual : sorted) {
+            Map<String, IdParams> projects = mapping.get(qual);
+            if (projects == null)
+                continue;  // Not a method, just one of the other strings
+            int h = CompiledMapping.hash(qual);
+            int i = h & (slots - 1);
+            while (table[i * 3 + 1] != CompiledMapping.EMPTY)
+                i = (i + 1) & (slots - 1);
+            table[i * 3] = h;
+            table[i * 3 + 1] = index.get(qual);
+            table[i * 3 + 2] = rec.size();
+
+            rec.writeInt(projects.size());
+            for (Map.Entry<String, IdParams> e : new TreeMap<>(projects).entrySet()) {
+                List<String> params = e.getValue().getParameters();
+                rec.writeInt(index.get(e.getKey()));
+                rec.writeInt(index.get(e.getValue().getId()));
+                rec.writeInt(params == null ? -1 : params.size());
+                if (params != null)
+                    for (String p : params)
+                        rec.writeInt(index.get(p));
+            }
+        }
+
+        long offsetsPos = CompiledMapping.HEADER;
+        long dataPos = offsetsPos + offsets.length * 4L;
+        long slotsPos = dataPos + data.size();
+        long recordsPos = slotsPos + (long) slots * CompiledMapping.SLOT;
+        if (recordsPos + records.size() > Integer.MAX_VALUE)
+            throw new MappingError(String.format("%d methods are too many for a compiled mapping", mapping.size()));
+
+        File dir = out.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(out.getName(), ".tmp", dir);
+        try {
+            try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp),
+                    1 << 16))) {
+                os.write(CompiledMapping.MAGIC);
+                os.writeInt(CompiledMapping.VERSION);
+                os.writeInt(sorted.length);
+                os.writeInt(mapping.size());
+                os.writeInt(slots);
+                os.writeInt((int) offsetsPos);
+                os.writeInt((int) dataPos);
+                os.writeInt((int) slotsPos);
+                os.writeInt((int) recordsPos);
+                for (int offset : offsets)
+                    os.writeInt(offset);
+                data.writeTo(os);
+                for (int i = 0; i < slots; i++) {
+                    os.writeInt(table[i * 3]);
+                    os.writeInt(table[i * 3 + 1]);
+                    int record = table[i * 3 + 1] == CompiledMapping.EMPTY ? 0 : table[i * 3 + 2];
+                    os.writeInt(record + (int) recordsPos);
+                }
+                records.writeTo(os);
+            }
+            Files.move(tmp.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+        return mapping.size();
+    }
+
+    /**
+     * The compile-mapping command
+     *
+     * @param args the mapping.json file to compile and the file to write the compiled mapping to
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2)
+            throw new InvalidArgumentError(String.format("Usage: compile-mapping mapping.json mapping.bin, not %s",
+                    Arrays.toString(args)));
+        File json = new File(args[0]);
+        File out = new File(args[1]);
+        long start = System.currentTimeMillis();
+        int methods = MappingCompiler.compile(json, out);
+        System.out.printf("Compiled %d methods from %s into %s (%d bytes) in %d ms%n", methods, json, out,
+                out.length(), System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.redhatqe.polarizer.reporter.mapping;
+
+import com.github.redhatqe.polarizer.reporter.IdParams;
+import com.github.redhatqe.polarizer.reporter.exceptions.MappingError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A read-only, in-memory view of a mapping.json file that is loaded once and shared by everything that needs it.
+ *
+ * Instances are cached by the canonical path of the mapping file.  The cached entry is reused for as long as the
+ * file's modification time and size are unchanged, otherwise the file is reloaded and the cache entry replaced.  The
+ * underlying maps are never modified after construction, so an index can be freely shared across threads.
+ *
+ * The mapping file can also be one compiled by MappingCompiler, in which case it is memory mapped rather than read,
+ * and the IdParams of a method are only decoded when the method is looked up.
+ *
+ * A json mapping can also be loaded for a single project, which only keeps the entries of that project.  Such an index
+ * is cached separately from the one for all projects, and counts the methods that have no entry for its project.
+ *
+ * Finally the mapping can be a directory of shards split by package prefix (see ShardedMapping), as written by the
+ * shard-mapping command.  A shard is only read the first time a method of its package is looked up, and the index is
+ * reloaded as soon as the index.json or any of the shards changes.
+ */
+public class MappingIndex {
+    private final static Logger logger = LoggerFactory.getLogger(MappingIndex.class);
+    private final static Map<String, MappingIndex> cache = new ConcurrentHashMap<>();
+    // Separates the path and the project in the cache key of an index for a single project
+    private final static char PROJECT_KEY = '\0';
+
+    private final String path;
+    private final long modified;
+    private final long size;
+    private final MappingSource mapping;
+    private final String project;
+
+    private MappingIndex(String path, long modified, long size, MappingSource mapping, String project) {
+        this.path = path;
+        this.modified = modified;
+        this.size = size;
+        this.mapping = mapping;
+        this.project = project;
+    }
+
+    /**
+     * Gets the shared MappingIndex for a mapping.json file, loading it only if it has not been seen before or if it
+     * has changed on disk since it was last loaded
+     *
+     * @param fpath path to a mapping.json file, to one compiled by MappingCompiler, or to a sharded mapping directory
+     * @return the shared index for the file
+     */
+    public static MappingIndex load(File fpath) {
+        return MappingIndex.load(fpath, null);
+    }
+
+    /**
+     * Like load(File), but only keeps the entries for project.  The other projects are skipped while the file is read,
+     * which saves most of the time and memory it takes to load a mapping that covers many projects.  A compiled
+     * mapping only decodes what is looked up anyway, so for one of those the index has all projects, though it is
+     * still cached for project.  For a sharded mapping directory, the project applies to every json shard as it is
+     * read.
+     *
+     * @param fpath path to a mapping.json file, to one compiled by MappingCompiler, or to a sharded mapping directory
+     * @param project the only project that will be looked up, or null for all of them
+     * @return the shared index of the file for project
+     */
+    public static MappingIndex load(File fpath, String project) {
+        if (!fpath.exists())
+            throw new MappingError(String.format("Could not find mapping file %s", fpath));
+
+        String canonical = MappingIndex.canonical(fpath);
+        boolean sharded = fpath.isDirectory();
+        long[] stamp = sharded ? ShardedMapping.stamp(fpath) : new long[] {fpath.lastModified(), fpath.length()};
+        long modified = stamp[0];
+        long size = stamp[1];
+        String key = project == null ? canonical : canonical + PROJECT_KEY + project;
+
+        return cache.compute(key, (k, current) -> {
+            if (current != null && current.modified == modified && current.size == size)
+                return current;
+            if (current != null)
+                MethodKeys.clear();  // Let go of the names of the file as it was
+            File file = new File(canonical);
+            // Only checked on a miss, since it means opening the file
+            boolean compiled = !sharded && CompiledMapping.isCompiled(file);
+            String only = compiled ? null : project;
+            logger.info(String.format("Loading mapping file %s%s", canonical,
+                    only == null ? "" : String.format(" for project %s", only)));
+            try {
+                MappingSource source;
+                if (sharded)
+                    source = ShardedMapping.open(file, only);
+                else if (compiled)
+                    source = CompiledMapping.open(file);
+                else if (only == null)
+                    source = MappingSource.of(MappingParser.parse(file, MethodKeys::intern));
+                else {
+                    ProjectedMapping projected = MappingParser.parse(file, only, MethodKeys::intern);
+                    logger.info(String.format("%s has %d methods for project %s, %d methods have no entry for it",
+                            canonical, projected.getMethods().size(), only, projected.getUnmapped().size()));
+                    source = projected;
+                }
+                return new MappingIndex(canonical, modified, size, source, only);
+            } catch (IOException e) {
+                throw new MappingError(String.format("Could not read mapping file %s: %s", canonical,
+                        e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Drops the cached indexes for the given mapping file, for all projects and for single ones, so that the next
+     * {@link #load(File)} rereads it.  The names pooled by MethodKeys are dropped too
+     *
+     * @param fpath path to a mapping.json file
+     */
+    public static void invalidate(File fpath) {
+        String canonical = MappingIndex.canonical(fpath);
+        if (cache.keySet().removeIf(k -> k.equals(canonical) || k.startsWith(canonical + PROJECT_KEY)))
+            MethodKeys.clear();
+    }
+
+    private static String canonical(File fpath) {
+        try {
+            return fpath.getCanonicalPath();
+        } catch (IOException e) {
+            return fpath.getAbsolutePath();
+        }
+    }
+
+    public static void invalidateAll() {
+        cache.clear();
+        MethodKeys.clear();
+    }
+
+    /**
+     * Looks up the IdParams for a method in a given project
+     *
+     * @param qual the unique name of the method (usually the fully qualified name)
+     * @param project the Polarion project
+     * @return the matching IdParams, or null if the method has no entry for the project
+     */
+    public IdParams get(String qual, String project) {
+        return this.mapping.get(qual, project);
+    }
+
+    /**
+     * @param qual the unique name of the method
+     * @return the project -> IdParams map for the method, or null if the method is not in the mapping
+     */
+    public Map<String, IdParams> get(String qual) {
+        return this.mapping.get(qual);
+    }
+
+    public boolean contains(String qual) {
+        return this.mapping.get(qual) != null;
+    }
+
+    /**
+     * @return how many methods the mapping has, or for a sharded mapping, how many the shards read so far have
+     */
+    public int size() {
+        return this.mapping.size();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the only project this index has entries for, or null if it has all of them
+     */
+    public String getProject() {
+        return project;
+    }
+
+    /**
+     * @return how many methods of the file have no entry for the project of this index, or 0 if the index has all
+     * projects
+     */
+    public int getUnmapped() {
+        return this.mapping.unmapped();
+    }
+}
@@ -0,0 +1,193 @@
+package com.github.redhatqe.polarizer.reporter.mapping;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.redhatqe.polarizer.reporter.IdParams;
+import com.github.redhatqe.polarizer.reporter.exceptions.MappingError;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reads a mapping.json file token by token with a JsonParser, straight into the maps a MappingIndex is made of.
+ * <p>
+ * The file looks like
+ *
+ * <pre>
+ *     { "com.example.Tests.testLogin": { "PROJ": { "id": "PROJ-123", "parameters": ["user", "password"] } } }
+ * </pre>
+ *
+ * No JsonNode tree is built, so reading a large mapping file only needs memory for the result.  Method names are
+ * pooled through MethodKeys, and project names and parameter lists that are the same for many methods are shared
+ * rather than repeated.  Every map and list returned is unmodifiable.  Only the files read for a MappingIndex pool
+ * their method names through MethodKeys, so a file read any other way does not grow the pool.
+ * <p>
+ * When only one project is needed, parse(File, String) skips the subtrees of all the other projects as it goes, so
+ * neither their IdParams nor their strings are ever built.
+ */
+public class MappingParser {
+    private final static JsonFactory factory = new JsonFactory();
+
+    private final String source;
+    // Gives the instance to keep for each method name
+    private final UnaryOperator<String> names;
+    private final Map<String, String> projects = new HashMap<>();
+    private final Map<List<String>, List<String>> parameterLists = new HashMap<>();
+
+    private MappingParser(String source, UnaryOperator<String> names) {
+        this.source = source;
+        this.names = names;
+    }
+
+    /**
+     * @param fpath path to a mapping.json file
+     * @return an unmodifiable map of unique methodname -> project -> IdParams
+     * @throws IOException if the file can not be read or is not valid json
+     * @throws MappingError if the json does not have the shape of a mapping file
+     */
+    public static Map<String, Map<String, IdParams>> parse(File fpath) throws IOException {
+        return MappingParser.parse(fpath, UnaryOperator.identity());
+    }
+
+    static Map<String, Map<String, IdParams>> parse(File fpath, UnaryOperator<String> names) throws IOException {
+        try (JsonParser parser = factory.createParser(fpath)) {
+            return new MappingParser(fpath.toString(), names).methods(parser);
+        }
+    }
+
+    /**
+     * @param fpath path to a mapping.json file
+     * @param project the only project whose entries are kept
+     * @return the entries of the project, and the methods that have none
+     * @throws IOException if the file can not be read or is not valid json
+     * @throws MappingError if the json does not have the shape of a mapping file
+     */
+    public static ProjectedMapping parse(File fpath, String project) throws IOException {
+        return MappingParser.parse(fpath, project, UnaryOperator.identity());
+    }
+
+    static ProjectedMapping parse(File fpath, String project, UnaryOperator<String> names) throws IOException {
+        try (JsonParser parser = factory.createParser(fpath)) {
+            return new MappingParser(fpath.toString(), names).project(parser, project);
+        }
+    }
+
+    /**
+     * @param dir a sharded mapping directory, as described by ShardedMapping
+     * @return an unmodifiable map of unique methodname -> project -> IdParams, with the entries of every shard
+     * @throws IOException if the index or a shard can not be read or is not valid json
+     * @throws MappingError if the directory has no index, or a shard is missing or compiled
+     */
+    public static Map<String, Map<String, IdParams>> parseShards(File dir) throws IOException {
+        return ShardedMapping.open(dir, null).readAll();
+    }
+
+    private ProjectedMapping project(JsonParser parser, String project) throws IOException {
+        Map<String, IdParams> mapped = new HashMap<>();
+        Set<String> unmapped = new HashSet<>();
+        if (parser.nextToken() == null)
+            return new ProjectedMapping(project, mapped, unmapped);
+        this.expect(parser, JsonToken.START_OBJECT, "the top level");
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            IdParams found = null;
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                String current;
+                while ((current = parser.nextFieldName()) != null) {
+                    if (current.equals(project))
+                        found = this.idParams(parser, name, project);
+                    else {
+                        parser.nextToken();
+                        parser.skipChildren();
+                    }
+                }
+            } else
+                parser.skipChildren();
+            if (found != null)
+                mapped.put(this.names.apply(name), found);
+            else
+                unmapped.add(name);
+        }
+        return new ProjectedMapping(project, mapped, unmapped);
+    }
+
+    private Map<String, Map<String, IdParams>> methods(JsonParser parser) throws IOException {
+        Map<String, Map<String, IdParams>> mapped = new HashMap<>();
+        if (parser.nextToken() == null)
+            return Collections.emptyMap();
+        this.expect(parser, JsonToken.START_OBJECT, "the top level");
+        String name;
+        while ((name = parser.nextFieldName()) != null)
+            mapped.put(this.names.apply(name), this.projects(parser, name));
+        return Collections.unmodifiableMap(mapped);
+    }
+
+    private Map<String, IdParams> projects(JsonParser parser, String name) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return Collections.emptyMap();
+        }
+        Map<String, IdParams> inner = new HashMap<>(4);
+        String project;
+        while ((project = parser.nextFieldName()) != null)
+            inner.put(this.projects.computeIfAbsent(project, p -> p), this.idParams(parser, name, project));
+        // Most methods are only mapped for one project
+        if (inner.size() == 1) {
+            Map.Entry<String, IdParams> only = inner.entrySet().iterator().next();
+            return Collections.singletonMap(only.getKey(), only.getValue());
+        }
+        return Collections.unmodifiableMap(inner);
+    }
+
+    private IdParams idParams(JsonParser parser, String name, String project) throws IOException {
+        this.expect(parser.nextToken(), JsonToken.START_OBJECT, parser, String.format("%s/%s", name, project));
+        String id = null;
+        List<String> parameters = null;
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            if (field.equals("id") && token.isScalarValue())
+                id = parser.getText();
+            else if (field.equals("parameters") && token == JsonToken.START_ARRAY)
+                parameters = this.parameters(parser, name, project);
+            else
+                parser.skipChildren();
+        }
+        if (id == null)
+            throw new MappingError(String.format("%s has no id for %s/%s", this.source, name, project));
+        return new IdParams(id, parameters);
+    }
+
+    private List<String> parameters(JsonParser parser, String name, String project) throws IOException {
+        List<String> params = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null || !token.isScalarValue())
+                throw new MappingError(String.format("%s has a parameter of %s/%s that is not a string", this.source,
+                        name, project));
+            params.add(parser.getText());
+        }
+        if (params.isEmpty())
+            return Collections.emptyList();
+        return this.parameterLists.computeIfAbsent(params, Collections::unmodifiableList);
+    }
+
+    private void expect(JsonParser parser, JsonToken expected, String where) {
+        this.expect(parser.getCurrentToken(), expected, parser, where);
+    }
+
+    private void expect(JsonToken token, JsonToken expected, JsonParser parser, String where) {
+        if (token != expected)
+            throw new MappingError(String.format("%s: expected %s at %s (line %d) but found %s", this.source,
+                    expected, where, parser.getCurrentLocation().getLineNr(), token));
+    }
+}
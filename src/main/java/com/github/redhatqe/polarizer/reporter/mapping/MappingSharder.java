@@ -0,0 +1,104 @@
+package com.github.redhatqe.polarizer.reporter.mapping;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.redhatqe.polarizer.reporter.IdParams;
+import com.github.redhatqe.polarizer.reporter.exceptions.InvalidArgumentError;
+import com.github.redhatqe.polarizer.reporter.exceptions.MappingError;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Splits a mapping.json file into the shards of a sharded mapping directory (see ShardedMapping), one per package
+ * prefix of the given depth:
+ *
+ * <pre>
+ *     java -cp reporter.jar com.github.redhatqe.polarizer.reporter.XUnitReporter \
+ *         shard-mapping mapping.json mapping.d 3
+ * </pre>
+ *
+ * puts com.example.auth.Tests.testLogin in mapping.d/com.example.auth.json, and methods whose package has fewer than
+ * 3 parts in the shard of their whole package.  Methods of classes in the default package go to default.json.  After
+ * that each shard can be edited or regenerated on its own, as long as it is replaced by moving a new file over it.
+ * Every file written here is written that way, the index.json last, so readers never see a half written file.
+ */
+public class MappingSharder {
+    private final static ObjectMapper mapper = new ObjectMapper();
+
+    private MappingSharder() {
+
+    }
+
+    /**
+     * @param qual the unique name of a method
+     * @param depth how many parts of the package the prefix has
+     * @return the package prefix of the shard qual goes in
+     */
+    static String prefix(String qual, int depth) {
+        String[] parts = qual.split("\\.");
+        // The last two parts are the class and the method
+        int pkg = Math.max(0, Math.min(depth, parts.length - 2));
+        return String.join(".", Arrays.copyOfRange(parts, 0, pkg));
+    }
+
+    /**
+     * @param mapping unique methodname -> project -> IdParams, as read by MappingParser
+     * @param dir the directory to write the shards and index.json to
+     * @param depth how many parts of the package each shard prefix has
+     * @return the prefix -> file name of every shard written
+     */
+    public static Map<String, String> shard(Map<String, Map<String, IdParams>> mapping, File dir, int depth)
+            throws IOException {
+        if (depth < 1)
+            throw new InvalidArgumentError(String.format("The shard depth must be at least 1, not %d", depth));
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new MappingError(String.format("Could not create mapping directory %s", dir));
+
+        Map<String, Map<String, Map<String, IdParams>>> shards = new TreeMap<>();
+        mapping.forEach((qual, projects) ->
+                shards.computeIfAbsent(prefix(qual, depth), p -> new TreeMap<>()).put(qual, new TreeMap<>(projects)));
+
+        ShardedMapping.Index index = new ShardedMapping.Index();
+        for (Map.Entry<String, Map<String, Map<String, IdParams>>> e : shards.entrySet()) {
+            String name = e.getKey().equals(ShardedMapping.DEFAULT) ? "default.json" : e.getKey() + ".json";
+            MappingSharder.write(e.getValue(), new File(dir, name));
+            index.shards.put(e.getKey(), name);
+        }
+        MappingSharder.write(index, new File(dir, ShardedMapping.INDEX));
+        return index.shards;
+    }
+
+    private static void write(Object value, File out) throws IOException {
+        File tmp = File.createTempFile(out.getName(), ".tmp", out.getAbsoluteFile().getParentFile());
+        try {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(tmp, value);
+            Files.move(tmp.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * The shard-mapping command
+     *
+     * @param args the mapping.json file to split, the directory to write the shards to, and the package depth
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !args[2].matches("\\d+"))
+            throw new InvalidArgumentError(String.format("Usage: shard-mapping mapping.json mapping.d depth, not %s",
+                    Arrays.toString(args)));
+        File json = new File(args[0]);
+        File dir = new File(args[1]);
+        if (!json.exists())
+            throw new MappingError(String.format("Could not find mapping file %s", json));
+        Map<String, Map<String, IdParams>> mapping = MappingParser.parse(json);
+        Map<String, String> shards = MappingSharder.shard(mapping, dir, Integer.parseInt(args[2]));
+        System.out.printf("Split %d methods from %s into %d shards in %s%n", mapping.size(), json, shards.size(), dir);
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.redhatqe.polarizer.reporter.mapping;
+
+import com.github.redhatqe.polarizer.reporter.IdParams;
+
+import java.util.Map;
+
+/**
+ * Where a MappingIndex gets its entries from.  Implementations must be safe to use from several threads at once.
+ */
+interface MappingSource {
+    /**
+     * @param qual the unique name of a method
+     * @return the unmodifiable project -> IdParams map of the method, or null if the method is not in the mapping
+     */
+    Map<String, IdParams> get(String qual);
+
+    /**
+     * @param qual the unique name of a method
+     * @param project the Polarion project
+     * @return the IdParams of the method for the project, or null if there is none
+     */
+    default IdParams get(String qual, String project) {
+        Map<String, IdParams> inner = this.get(qual);
+        return inner == null ? null : inner.get(project);
+    }
+
+    /**
+     * @return how many methods the mapping has
+     */
+    int size();
+
+    /**
+     * @return how many methods have no entry for the project, for a source that only has one project's entries
+     */
+    default int unmapped() {
+        return 0;
+    }
+
+    /**
+     * @param mapping the unmodifiable maps read by MappingParser
+     * @return a source that looks the methods up in mapping
+     */
+    static MappingSource of(Map<String, Map<String, IdParams>> mapping) {
+        return new MappingSource() {
+            @Override
+            public Map<String, IdParams> get(String qual) {
+                return mapping.get(qual);
+            }
+
+            @Override
+            public int size() {
+                return mapping.size();
+            }
+        };
+    }
+}
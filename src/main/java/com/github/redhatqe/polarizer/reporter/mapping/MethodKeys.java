@@ -0,0 +1,72 @@
+package com.github.redhatqe.polarizer.reporter.mapping;
+
+import org.testng.ITestNGMethod;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the unique names (classname.methodname) used as keys into the mapping file.
+ * <p>
+ * Every data provider invocation and every testcase of an xunit file used to format its own copy of the same name
+ * before looking it up.  Here each name is built once per class/method pair, and every caller gets back the same
+ * String instance.  Names are also pooled, so the keys of a MappingIndex and the keys handed out here are the same
+ * instances, which lets lookups succeed on the identity check in String.equals.
+ * <p>
+ * MappingIndex clears the cache whenever it replaces or drops an index, so in a long running JVM it only holds the
+ * names read since the last reload, rather than every name ever seen.  A lookup with a name pooled before the clear
+ * still works, it just compares the characters.
+ */
+public class MethodKeys {
+    // classname -> methodname -> classname.methodname
+    private final static Map<String, Map<String, String>> keys = new ConcurrentHashMap<>();
+    private final static Map<String, String> pool = new ConcurrentHashMap<>();
+
+    private MethodKeys() {
+
+    }
+
+    /**
+     * @param fn a test method
+     * @return the unique name of the method as used in the mapping file
+     */
+    public static String key(ITestNGMethod fn) {
+        return MethodKeys.key(fn.getTestClass().getName(), fn.getMethodName());
+    }
+
+    /**
+     * @param classname fully qualified name of the class
+     * @param methname name of the method
+     * @return the unique name of the method as used in the mapping file
+     */
+    public static String key(String classname, String methname) {
+        Map<String, String> byMethod = keys.get(classname);
+        if (byMethod == null)
+            byMethod = keys.computeIfAbsent(classname, k -> new ConcurrentHashMap<>());
+        String qual = byMethod.get(methname);
+        if (qual == null)
+            qual = byMethod.computeIfAbsent(methname, m -> MethodKeys.intern(classname + "." + m));
+        return qual;
+    }
+
+    /**
+     * @param qual a unique method name
+     * @return the pooled instance equal to qual
+     */
+    public static String intern(String qual) {
+        String pooled = pool.putIfAbsent(qual, qual);
+        return pooled == null ? qual : pooled;
+    }
+
+    public static int size() {
+        return pool.size();
+    }
+
+    /**
+     * Drops every cached name, eg when a mapping file is reloaded in a long running JVM
+     */
+    public static void clear() {
+        keys.clear();
+        pool.clear();
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.redhatqe.polarizer.reporter.mapping;
+
+import com.github.redhatqe.polarizer.reporter.IdParams;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The entries of a mapping file for a single project, as read by MappingParser.parse(File, String).
+ * <p>
+ * Only the IdParams of the project are kept, in a flat method -> IdParams map.  The methods that are in the file but
+ * have no entry for the project are remembered by name only, so that a lookup can still tell a method that is missing
+ * from the file apart from one that is missing for the project.
+ */
+public class ProjectedMapping implements MappingSource {
+    private final String project;
+    private final Map<String, IdParams> methods;
+    private final Set<String> unmapped;
+
+    ProjectedMapping(String project, Map<String, IdParams> methods, Set<String> unmapped) {
+        this.project = project;
+        this.methods = Collections.unmodifiableMap(methods);
+        this.unmapped = Collections.unmodifiableSet(unmapped);
+    }
+
+    @Override
+    public Map<String, IdParams> get(String qual) {
+        IdParams ip = this.methods.get(qual);
+        if (ip != null)
+            return Collections.singletonMap(this.project, ip);
+        return this.unmapped.contains(qual) ? Collections.emptyMap() : null;
+    }
+
+    @Override
+    public IdParams get(String qual, String project) {
+        return this.project.equals(project) ? this.methods.get(qual) : null;
+    }
+
+    @Override
+    public int size() {
+        return this.methods.size() + this.unmapped.size();
+    }
+
+    @Override
+    public int unmapped() {
+        return this.unmapped.size();
+    }
+
+    public String getProject() {
+        return project;
+    }
+
+    /**
+     * @return method -> IdParams for every method of the file that has an entry for the project
+     */
+    public Map<String, IdParams> getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return the methods of the file that have no entry for the project
+     */
+    public Set<String> getUnmapped() {
+        return unmapped;
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.redhatqe.polarizer.reporter.mapping;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.redhatqe.polarizer.reporter.IdParams;
+import com.github.redhatqe.polarizer.reporter.exceptions.MappingError;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A mapping split into shards by package prefix, kept in a directory with an index.json that lists the shards:
+ *
+ * <pre>
+ *     {
+ *       "shards": {
+ *         "com.example.auth": "com.example.auth.json",
+ *         "com.example": "com.example.json",
+ *         "": "default.json"
+ *       }
+ *     }
+ * </pre>
+ *
+ * A method belongs to the shard with the longest prefix that its class is in, and the "" shard, if there is one, gets
+ * the methods no other shard matches.  Shards are mapping.json files (or files compiled from one by MappingCompiler)
+ * and are only read the first time a method of theirs is looked up, so a run that only touches a few packages only
+ * reads their shards.  Since every team can own its own shard, they can be updated independently.
+ */
+class ShardedMapping implements MappingSource {
+    final static String INDEX = "index.json";
+    final static String DEFAULT = "";
+
+    private final File dir;
+    private final String project;
+    private final Map<String, String> shards;
+    private final Map<String, MappingSource> loaded = new ConcurrentHashMap<>();
+    // Class of a method -> prefix of its shard, so the prefixes are only searched once per class
+    private final Map<String, String> prefixes = new ConcurrentHashMap<>();
+
+    /**
+     * The contents of index.json
+     */
+    static class Index {
+        @JsonProperty
+        public Map<String, String> shards = new LinkedHashMap<>();
+    }
+
+    private ShardedMapping(File dir, String project, Map<String, String> shards) {
+        this.dir = dir;
+        this.project = project;
+        this.shards = shards;
+    }
+
+    /**
+     * @param dir a directory with an index.json
+     * @param project the only project to keep the entries of, or null for all of them
+     * @return the mapping, with no shard read yet
+     */
+    static ShardedMapping open(File dir, String project) throws IOException {
+        File index = new File(dir, INDEX);
+        if (!index.isFile())
+            throw new MappingError(String.format("Mapping directory %s has no %s", dir, INDEX));
+        Index read = new ObjectMapper().readValue(index, Index.class);
+        if (read.shards == null || read.shards.isEmpty())
+            throw new MappingError(String.format("%s lists no shards", index));
+        return new ShardedMapping(dir, project, new HashMap<>(read.shards));
+    }
+
+    /**
+     * Only the index.json and the shards it lists are looked at, so other files in the directory, like the temporary
+     * ones MappingSharder writes to, don't count.  If the index can't be read, only the index itself is, and open()
+     * reports the problem.
+     *
+     * @param dir a directory with an index.json
+     * @return the newest modification time of the index and the shards, and their total size, which change whenever
+     * any of them does
+     */
+    static long[] stamp(File dir) {
+        File index = new File(dir, INDEX);
+        List<File> files = new ArrayList<>();
+        files.add(index);
+        try {
+            Index read = new ObjectMapper().readValue(index, Index.class);
+            if (read.shards != null)
+                read.shards.values().forEach(name -> files.add(new File(dir, name)));
+        } catch (IOException e) {
+            // Leave it to open()
+        }
+        long modified = 0;
+        long size = 0;
+        for (File f : files) {
+            modified = Math.max(modified, f.lastModified());
+            size += f.length();
+        }
+        return new long[] {modified, size};
+    }
+
+    @Override
+    public Map<String, IdParams> get(String qual) {
+        MappingSource shard = this.shard(qual);
+        return shard == null ? null : shard.get(qual);
+    }
+
+    @Override
+    public IdParams get(String qual, String project) {
+        MappingSource shard = this.shard(qual);
+        return shard == null ? null : shard.get(qual, project);
+    }
+
+    /**
+     * @return how many methods the shards read so far have
+     */
+    @Override
+    public int size() {
+        return this.loaded.values().stream().mapToInt(MappingSource::size).sum();
+    }
+
+    /**
+     * @return how many methods of the shards read so far have no entry for the project
+     */
+    @Override
+    public int unmapped() {
+        return this.loaded.values().stream().mapToInt(MappingSource::unmapped).sum();
+    }
+
+    /**
+     * Reads every shard at once, for the callers that need the whole mapping as one map.  A method must only be in one
+     * shard, since there is no telling which of its entries is the right one otherwise.
+     *
+     * @return unique methodname -> project -> IdParams of all the shards
+     */
+    Map<String, Map<String, IdParams>> readAll() throws IOException {
+        Map<String, Map<String, IdParams>> all = new HashMap<>();
+        Map<String, String> shardOf = new HashMap<>();
+        for (String name : this.shards.values()) {
+            File file = new File(this.dir, name);
+            if (CompiledMapping.isCompiled(file))
+                throw new MappingError(String.format("Shard %s is compiled and can only be read by a MappingIndex",
+                        file));
+            for (Map.Entry<String, Map<String, IdParams>> e : MappingParser.parse(file).entrySet()) {
+                String other = shardOf.putIfAbsent(e.getKey(), name);
+                if (other != null)
+                    throw new MappingError(String.format("%s is in both shard %s and shard %s of %s", e.getKey(),
+                            other, name, this.dir));
+                all.put(e.getKey(), e.getValue());
+            }
+        }
+        return Collections.unmodifiableMap(all);
+    }
+
+    private MappingSource shard(String qual) {
+        int dot = qual.lastIndexOf('.');
+        String clazz = dot < 0 ? DEFAULT : qual.substring(0, dot);
+        String prefix = this.prefixes.computeIfAbsent(clazz, this::prefix);
+        if (!this.shards.containsKey(prefix))
+            return null;
+        return this.loaded.computeIfAbsent(prefix, this::read);
+    }
+
+    /**
+     * @return the longest prefix with a shard that clazz is in, or DEFAULT if there is none
+     */
+    private String prefix(String clazz) {
+        for (String candidate = clazz; !candidate.isEmpty(); ) {
+            if (this.shards.containsKey(candidate))
+                return candidate;
+            int dot = candidate.lastIndexOf('.');
+            candidate = dot < 0 ? DEFAULT : candidate.substring(0, dot);
+        }
+        return DEFAULT;
+    }
+
+    private MappingSource read(String prefix) {
+        File file = new File(this.dir, this.shards.get(prefix));
+        if (!file.isFile())
+            throw new MappingError(String.format("Could not find shard %s for %s", file,
+                    prefix.isEmpty() ? "the default package" : prefix));
+        try {
+            if (CompiledMapping.isCompiled(file))
+                return CompiledMapping.open(file);
+            if (this.project != null)
+                return MappingParser.parse(file, this.project, MethodKeys::intern);
+            return MappingSource.of(MappingParser.parse(file, MethodKeys::intern));
+        } catch (IOException e) {
+            throw new MappingError(String.format("Could not read shard %s: %s", file, e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.github.redhatqe.polarizer.reporter.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times the phases of producing a report (config load, mapping load, method walk, marshalling and validation) and
+ * counts what went into it.
+ * <p>
+ * Like the DiagnosticsSink, there is one instance per run.  When the run finishes its metrics are logged, optionally
+ * written as a json sidecar next to the report, and published through JMX under {@link #OBJECT_NAME} until the next
+ * run finishes.  All counters and timers can be updated from several threads.
+ */
+public class ReportMetrics implements ReportMetricsMBean {
+    private final static Logger logger = LoggerFactory.getLogger(ReportMetrics.class);
+    public final static String OBJECT_NAME = "com.github.redhatqe.polarizer.reporter:type=ReportMetrics";
+    private static volatile ReportMetrics current = null;
+
+    public enum Phase {
+        CONFIG("config"),
+        MAPPING("mapping"),
+        UNMARSHAL("unmarshal"),
+        METHODS("methods"),
+        MARSHAL("marshal"),
+        VALIDATE("validate");
+
+        public final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Adds the time between its creation and stop() to a phase.  Stop it in a finally block so that the time is
+     * counted even when the phase fails.
+     */
+    public class Timer {
+        private final Phase phase;
+        private final long start = System.nanoTime();
+
+        private Timer(Phase phase) {
+            this.phase = phase;
+        }
+
+        public void stop() {
+            phases.get(this.phase).add(System.nanoTime() - this.start);
+        }
+    }
+
+    private final long started = System.nanoTime();
+    private volatile long finished = -1;
+    private volatile String report = "";
+    private final Map<Phase, LongAdder> phases = new EnumMap<>(Phase.class);
+    private final LongAdder testcases = new LongAdder();
+    private final LongAdder properties = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder mappingHits = new LongAdder();
+    private final LongAdder mappingMisses = new LongAdder();
+
+    public ReportMetrics() {
+        for (Phase p : Phase.values())
+            this.phases.put(p, new LongAdder());
+    }
+
+    /**
+     * @return the metrics of the current run, creating them if the run doesn't have any yet
+     */
+    public static ReportMetrics current() {
+        ReportMetrics metrics = current;
+        if (metrics == null) {
+            synchronized (ReportMetrics.class) {
+                if (current == null)
+                    current = new ReportMetrics();
+                metrics = current;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Finishes the metrics of the current run, if there are any, so that the next run starts with new ones
+     *
+     * @param report the report that was produced, or null if there is none
+     * @param sidecar where to write the metrics as json, or null to not write them
+     * @return the finished metrics, or null if the run had none
+     */
+    public static synchronized ReportMetrics finish(File report, File sidecar) {
+        ReportMetrics metrics = current;
+        if (metrics == null)
+            return null;
+        current = null;
+        metrics.publish(report, sidecar);
+        return metrics;
+    }
+
+    /**
+     * Stops the clock on these metrics, logs them, writes them to the sidecar and makes them the ones shown through
+     * JMX.  Used directly for metrics that were not obtained from current(), eg those of a batch conversion.
+     *
+     * @param report the report (or directory of reports) that was produced, or null if there is none
+     * @param sidecar where to write the metrics as json, or null to not write them
+     */
+    public void publish(File report, File sidecar) {
+        this.finished = System.nanoTime();
+        if (report != null)
+            this.report = report.toString();
+        logger.info(String.format("Report metrics: %s", this.toMap()));
+        if (sidecar != null) {
+            try {
+                this.write(sidecar);
+            } catch (IOException e) {
+                logger.warn(String.format("Could not write report metrics to %s", sidecar));
+            }
+        }
+        this.register();
+    }
+
+    /**
+     * @param report the xml report
+     * @return the json file the metrics of the report are written to, eg testng-polarion-metrics.json
+     */
+    public static File sidecar(File report) {
+        String name = report.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot == -1 ? name : name.substring(0, dot);
+        return new File(report.getAbsoluteFile().getParentFile(), base + "-metrics.json");
+    }
+
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            logger.warn(String.format("Could not register %s: %s", OBJECT_NAME, e.getMessage()));
+        }
+    }
+
+    public Timer time(Phase phase) {
+        return new Timer(phase);
+    }
+
+    public void testcases(long n) {
+        this.testcases.add(n);
+    }
+
+    public void properties(long n) {
+        this.properties.add(n);
+    }
+
+    public void written(long bytes) {
+        this.bytesWritten.add(bytes);
+    }
+
+    public void mappingHit() {
+        this.mappingHits.increment();
+    }
+
+    public void mappingMiss() {
+        this.mappingMisses.increment();
+    }
+
+    public long getMillis(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(this.phases.get(phase).sum());
+    }
+
+    /**
+     * @return the metrics keyed the same way as in the json sidecar
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Long> times = new LinkedHashMap<>();
+        for (Phase p : Phase.values())
+            times.put(p.key, this.getMillis(p));
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("report", this.report);
+        map.put("total-ms", this.getTotalMillis());
+        map.put("phases-ms", times);
+        map.put("testcases", this.getTestcases());
+        map.put("properties", this.getProperties());
+        map.put("bytes-written", this.getBytesWritten());
+        map.put("mapping-hits", this.getMappingHits());
+        map.put("mapping-misses", this.getMappingMisses());
+        return map;
+    }
+
+    public void write(File sidecar) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(sidecar, this.toMap());
+    }
+
+    @Override
+    public String getReport() {
+        return report;
+    }
+
+    @Override
+    public long getConfigMillis() {
+        return this.getMillis(Phase.CONFIG);
+    }
+
+    @Override
+    public long getMappingMillis() {
+        return this.getMillis(Phase.MAPPING);
+    }
+
+    @Override
+    public long getUnmarshalMillis() {
+        return this.getMillis(Phase.UNMARSHAL);
+    }
+
+    @Override
+    public long getMethodsMillis() {
+        return this.getMillis(Phase.METHODS);
+    }
+
+    @Override
+    public long getMarshalMillis() {
+        return this.getMillis(Phase.MARSHAL);
+    }
+
+    @Override
+    public long getValidateMillis() {
+        return this.getMillis(Phase.VALIDATE);
+    }
+
+    /**
+     * @return time from the first metric of the run until it finished (or until now if it hasn't finished yet)
+     */
+    @Override
+    public long getTotalMillis() {
+        long end = this.finished == -1 ? System.nanoTime() : this.finished;
+        return TimeUnit.NANOSECONDS.toMillis(end - this.started);
+    }
+
+    @Override
+    public long getTestcases() {
+        return testcases.sum();
+    }
+
+    @Override
+    public long getProperties() {
+        return properties.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getMappingHits() {
+        return mappingHits.sum();
+    }
+
+    @Override
+    public long getMappingMisses() {
+        return mappingMisses.sum();
+    }
+}
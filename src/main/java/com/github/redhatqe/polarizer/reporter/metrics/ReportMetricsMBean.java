@@ -0,0 +1,32 @@
+package com.github.redhatqe.polarizer.reporter.metrics;
+
+/**
+ * JMX view of the metrics of the last finished report
+ */
+public interface ReportMetricsMBean {
+    String getReport();
+
+    long getConfigMillis();
+
+    long getMappingMillis();
+
+    long getUnmarshalMillis();
+
+    long getMethodsMillis();
+
+    long getMarshalMillis();
+
+    long getValidateMillis();
+
+    long getTotalMillis();
+
+    long getTestcases();
+
+    long getProperties();
+
+    long getBytesWritten();
+
+    long getMappingHits();
+
+    long getMappingMisses();
+}
@@ -0,0 +1,211 @@
+package com.github.redhatqe.polarizer.reporter.model;
+
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Error;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Failure;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Properties;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Property;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase;
+import com.github.redhatqe.polarizer.reporter.stream.XUnitWriter;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of one test method invocation, held in as little memory as possible until the report is written.
+ * <p>
+ * The generated importer.xunit.Testcase keeps its time as a String, allocates a list for each of its error, failure,
+ * system-out and system-err children as soon as they are looked at, and needs a Properties plus a Property per
+ * property.  Here the time is a long, the child lists are only created when something is added to them, and the
+ * properties are two parallel arrays of name ids (from a shared PropertyNames) and values.  Call toTestcase() or
+ * write() once the testcase is about to be written out.
+ */
+public class CompactTestcase {
+    private final static int[] NO_NAMES = new int[0];
+    private final static String[] NO_VALUES = new String[0];
+
+    private final PropertyNames names;
+    private final String name;
+    private final String classname;
+    private final long millis;
+    private boolean skipped = false;
+    private List<Outcome> errors = null;
+    private List<Outcome> failures = null;
+    private List<String> systemOut = null;
+    private List<String> systemErr = null;
+    private int[] propNames = NO_NAMES;
+    private String[] propValues = NO_VALUES;
+    private int propCount = 0;
+
+    /**
+     * The type, message and content of an &lt;error&gt; or &lt;failure&gt;
+     */
+    public static class Outcome {
+        public final String type;
+        public final String message;
+        public final String content;
+
+        public Outcome(String type, String message, String content) {
+            this.type = type;
+            this.message = message;
+            this.content = content;
+        }
+    }
+
+    /**
+     * @param names the dictionary the property names are stored in
+     * @param name name of the test method
+     * @param classname name of the class of the test method
+     * @param millis how long the invocation took, in milliseconds
+     */
+    public CompactTestcase(PropertyNames names, String name, String classname, long millis) {
+        this.names = names;
+        this.name = name;
+        this.classname = classname;
+        this.millis = millis;
+    }
+
+    public void addError(String type, String message, String content) {
+        if (this.errors == null)
+            this.errors = new ArrayList<>(1);
+        this.errors.add(new Outcome(type, message, content));
+    }
+
+    public void addFailure(String type, String message, String content) {
+        if (this.failures == null)
+            this.failures = new ArrayList<>(1);
+        this.failures.add(new Outcome(type, message, content));
+    }
+
+    public void addSystemOut(String out) {
+        if (this.systemOut == null)
+            this.systemOut = new ArrayList<>(1);
+        this.systemOut.add(out);
+    }
+
+    public void addSystemErr(String err) {
+        if (this.systemErr == null)
+            this.systemErr = new ArrayList<>(1);
+        this.systemErr.add(err);
+    }
+
+    /**
+     * Appends a &lt;property&gt;.  A null name is kept as null rather than given an id.
+     */
+    public void addProperty(String name, String value) {
+        if (this.propCount == this.propNames.length) {
+            int grown = Math.max(4, this.propCount * 2);
+            this.propNames = Arrays.copyOf(this.propNames, grown);
+            this.propValues = Arrays.copyOf(this.propValues, grown);
+        }
+        this.propNames[this.propCount] = name == null ? -1 : this.names.id(name);
+        this.propValues[this.propCount] = value;
+        this.propCount++;
+    }
+
+    /**
+     * Gives back the unused slots of the property arrays, once no more properties will be added
+     */
+    public void trim() {
+        if (this.propCount < this.propNames.length) {
+            this.propNames = this.propCount == 0 ? NO_NAMES : Arrays.copyOf(this.propNames, this.propCount);
+            this.propValues = this.propCount == 0 ? NO_VALUES : Arrays.copyOf(this.propValues, this.propCount);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getClassname() {
+        return classname;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(boolean skipped) {
+        this.skipped = skipped;
+    }
+
+    public List<Outcome> getErrors() {
+        return this.errors == null ? Collections.emptyList() : Collections.unmodifiableList(this.errors);
+    }
+
+    public List<Outcome> getFailures() {
+        return this.failures == null ? Collections.emptyList() : Collections.unmodifiableList(this.failures);
+    }
+
+    public int getPropertyCount() {
+        return propCount;
+    }
+
+    public String getPropertyName(int i) {
+        int id = this.propNames[i];
+        return id < 0 ? null : this.names.name(id);
+    }
+
+    public String getPropertyValue(int i) {
+        return this.propValues[i];
+    }
+
+    /**
+     * @return a new importer.xunit.Testcase with everything this testcase holds, for marshalling or writing
+     */
+    public Testcase toTestcase() {
+        Testcase tc = new Testcase();
+        tc.setName(this.name);
+        tc.setClassname(this.classname);
+        tc.setTime(Double.toString(this.millis / 1000.0));
+        if (this.skipped)
+            tc.setSkipped("true");
+        if (this.errors != null)
+            for (Outcome o : this.errors) {
+                Error err = new Error();
+                err.setType(o.type);
+                err.setMessage(o.message);
+                err.setContent(o.content);
+                tc.getError().add(err);
+            }
+        if (this.failures != null)
+            for (Outcome o : this.failures) {
+                Failure fail = new Failure();
+                fail.setType(o.type);
+                fail.setMessage(o.message);
+                fail.setContent(o.content);
+                tc.getFailure().add(fail);
+            }
+        if (this.systemOut != null)
+            tc.getSystemOut().addAll(this.systemOut);
+        if (this.systemErr != null)
+            tc.getSystemErr().addAll(this.systemErr);
+        if (this.propCount > 0) {
+            Properties props = new Properties();
+            List<Property> list = props.getProperty();
+            for (int i = 0; i < this.propCount; i++) {
+                Property p = new Property();
+                p.setName(this.getPropertyName(i));
+                p.setValue(this.propValues[i]);
+                list.add(p);
+            }
+            tc.setProperties(props);
+        }
+        return tc;
+    }
+
+    /**
+     * Writes this testcase, only building its importer.xunit.Testcase for as long as the write takes
+     *
+     * @param writer the report or spool being written
+     */
+    public void write(XUnitWriter writer) throws XMLStreamException {
+        writer.writeTestcase(this.toTestcase());
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.redhatqe.polarizer.reporter.model;
+
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.stream.XUnitWriter;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A &lt;testsuite&gt; whose testcases are kept as CompactTestcases.
+ * <p>
+ * The header is an importer.xunit.Testsuite with its attributes and properties but no testcases.  There is one per
+ * &lt;test&gt; so it is not worth compacting, and keeping it as is lets the existing code fill in its counts.
+ */
+public class CompactTestsuite {
+    private final Testsuite header;
+    private final List<CompactTestcase> testcases;
+
+    public CompactTestsuite(Testsuite header) {
+        this(header, new ArrayList<>());
+    }
+
+    public CompactTestsuite(Testsuite header, List<CompactTestcase> testcases) {
+        this.header = header;
+        this.testcases = testcases;
+    }
+
+    public Testsuite getHeader() {
+        return header;
+    }
+
+    public List<CompactTestcase> getTestcases() {
+        return testcases;
+    }
+
+    /**
+     * Converts the testcases and adds them to the header, for when the whole report has to be held as JAXB objects.
+     * Meant to be called once, right before marshalling.
+     *
+     * @return the header, now holding a Testcase for each CompactTestcase
+     */
+    public Testsuite toTestsuite() {
+        List<com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase> tcs = this.header.getTestcase();
+        for (CompactTestcase tc : this.testcases)
+            tcs.add(tc.toTestcase());
+        return this.header;
+    }
+
+    /**
+     * Writes the testsuite, converting one testcase at a time so the JAXB objects never pile up
+     *
+     * @param writer the report being written
+     */
+    public void write(XUnitWriter writer) throws XMLStreamException {
+        writer.startTestsuite(this.header);
+        for (CompactTestcase tc : this.testcases)
+            tc.write(writer);
+        writer.endTestsuite(this.header);
+    }
+}
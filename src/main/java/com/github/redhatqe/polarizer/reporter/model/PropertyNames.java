@@ -0,0 +1,53 @@
+package com.github.redhatqe.polarizer.reporter.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dictionary of &lt;property&gt; names shared by many CompactTestcases, so that each testcase only has to store an
+ * int per property name instead of a String.
+ * <p>
+ * A run only ever uses a handful of distinct names (polarion-testcase-id plus the parameter names from the mapping
+ * file), so ids are never removed.  Looking up ids and names can be done from any number of threads.
+ */
+public class PropertyNames {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16];
+    private int size = 0;
+
+    /**
+     * @param name a property name
+     * @return the id of name, which is assigned the first time the name is seen
+     */
+    public int id(String name) {
+        Integer id = this.ids.get(name);
+        if (id != null)
+            return id;
+        synchronized (this) {
+            id = this.ids.get(name);
+            if (id != null)
+                return id;
+            String[] current = this.names;
+            if (this.size == current.length)
+                current = Arrays.copyOf(current, current.length * 2);
+            current[this.size] = name;
+            this.names = current;
+            // Only published once the name can be looked up, so any id handed out is always valid for name()
+            this.ids.put(name, this.size);
+            return this.size++;
+        }
+    }
+
+    /**
+     * @param id an id returned by id()
+     * @return the name the id was assigned to
+     */
+    public String name(int id) {
+        return this.names[id];
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+}
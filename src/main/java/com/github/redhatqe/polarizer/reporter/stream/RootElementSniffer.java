@@ -0,0 +1,47 @@
+package com.github.redhatqe.polarizer.reporter.stream;
+
+import com.github.redhatqe.polarizer.reporter.exceptions.XMLUnmarshallError;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Finds the name of the root element of an xml file by reading only up to its first start tag, so that callers can
+ * pick the right JAXB class (eg Testsuites or Testsuite) before parsing the whole file.
+ */
+public class RootElementSniffer {
+    private final static XMLInputFactory factory = XMLInputFactory.newFactory();
+
+    private RootElementSniffer() {
+
+    }
+
+    /**
+     * @param xml an xml file
+     * @return the local name of the root element
+     */
+    public static String sniff(File xml) {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(xml), 1 << 13)) {
+            XMLStreamReader reader = factory.createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT)
+                        return reader.getLocalName();
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new XMLUnmarshallError(String.format("Could not read the root element of %s: %s", xml,
+                    e.getMessage()));
+        }
+        throw new XMLUnmarshallError(String.format("%s has no root element", xml));
+    }
+}
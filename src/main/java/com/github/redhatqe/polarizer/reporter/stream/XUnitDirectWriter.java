@@ -0,0 +1,405 @@
+package com.github.redhatqe.polarizer.reporter.stream;
+
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Error;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Failure;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Properties;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Property;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes an xunit file by encoding the UTF-8 bytes itself, without going through JAXB or an XMLStreamWriter.
+ * <p>
+ * It has the same methods as XUnitStreamWriter and writes exactly the same bytes: the same declaration, indentation,
+ * empty element forms and escaping (&amp;, &lt; and &gt; in text, and &quot; as well in attributes).  Tag names and
+ * indentation are kept as precomputed byte arrays, text is escaped and encoded in a single pass into a 64KB buffer,
+ * and the buffer is written straight to a FileChannel.  Failures to write are reported as XMLStreamExceptions, the
+ * same as XMLStreamWriter does.
+ */
+public class XUnitDirectWriter implements XUnitWriter {
+    private final static byte[] XML_DECLARATION =
+            bytes("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+    private final static int MAX_DEPTH = 16;
+    private final static byte[][] NEWLINES = new byte[MAX_DEPTH][];
+    private final static byte[] TESTSUITES = bytes("testsuites");
+    private final static byte[] TESTSUITE = bytes("testsuite");
+    private final static byte[] TESTCASE = bytes("testcase");
+    private final static byte[] PROPERTIES = bytes("properties");
+    private final static byte[] PROPERTY = bytes("property");
+    private final static byte[] EMPTY_CLOSE = bytes("/>");
+    private final static byte[] SKIPPED = bytes("skipped");
+    private final static byte[] ERROR = bytes("error");
+    private final static byte[] FAILURE = bytes("failure");
+    private final static byte[] SYSTEM_OUT = bytes("system-out");
+    private final static byte[] SYSTEM_ERR = bytes("system-err");
+    private final static byte[] AMP = bytes("&amp;");
+    private final static byte[] LT = bytes("&lt;");
+    private final static byte[] GT = bytes("&gt;");
+    private final static byte[] QUOT = bytes("&quot;");
+
+    static {
+        StringBuilder sb = new StringBuilder("\n");
+        for (int i = 0; i < MAX_DEPTH; i++) {
+            NEWLINES[i] = bytes(sb.toString());
+            sb.append("    ");
+        }
+    }
+
+    private final WritableByteChannel channel;
+    private final byte[] buf = new byte[1 << 16];
+    private int pos = 0;
+    private final byte[][] open = new byte[MAX_DEPTH][];
+    private int depth;
+    private final int base;
+    private boolean startOpen = false;
+    private boolean hasChildren = false;
+    private int testsuites = 0;
+    private int testcases = 0;
+    private int properties = 0;
+
+    public XUnitDirectWriter(File out) throws IOException, XMLStreamException {
+        this(XUnitDirectWriter.channel(out), 0);
+        this.raw(XML_DECLARATION);
+    }
+
+    public XUnitDirectWriter(OutputStream os) throws XMLStreamException {
+        this(Channels.newChannel(os), 0);
+        this.raw(XML_DECLARATION);
+    }
+
+    private XUnitDirectWriter(WritableByteChannel channel, int depth) {
+        this.channel = channel;
+        this.depth = depth;
+        this.base = depth;
+    }
+
+    /**
+     * Creates a writer for a document fragment, the same as XUnitStreamWriter.fragment
+     *
+     * @param out where to write the fragment
+     * @param depth nesting level of the fragment's top level elements
+     * @return a writer for the fragment
+     */
+    public static XUnitDirectWriter fragment(File out, int depth) throws IOException {
+        return new XUnitDirectWriter(XUnitDirectWriter.channel(out), depth);
+    }
+
+    public static XUnitDirectWriter fragment(OutputStream os, int depth) {
+        return new XUnitDirectWriter(Channels.newChannel(os), depth);
+    }
+
+    @Override
+    public void writeFragment(File fragment, int testcases) throws XMLStreamException, IOException {
+        this.testcases += testcases;
+        try (FileChannel in = FileChannel.open(fragment.toPath(), StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size == 0)
+                return;
+            this.closeStart();
+            this.drain();
+            long copied = 0;
+            while (copied < size)
+                copied += in.transferTo(copied, size - copied, this.channel);
+        }
+        this.hasChildren = true;
+    }
+
+    @Override
+    public void startTestsuites(Testsuites header) throws XMLStreamException {
+        this.start(TESTSUITES);
+        this.attribute("name", header.getName());
+        this.attribute("time", header.getTime());
+        this.attribute("tests", header.getTests());
+        this.attribute("failures", header.getFailures());
+        this.attribute("disabled", header.getDisabled());
+        this.attribute("errors", header.getErrors());
+        this.writeProperties(header.getProperties());
+    }
+
+    @Override
+    public void endTestsuites() throws XMLStreamException {
+        this.end();
+    }
+
+    @Override
+    public void startTestsuite(Testsuite header) throws XMLStreamException {
+        this.start(TESTSUITE);
+        this.attribute("name", header.getName());
+        this.attribute("tests", header.getTests());
+        this.attribute("failures", header.getFailures());
+        this.attribute("errors", header.getErrors());
+        this.attribute("time", header.getTime());
+        this.attribute("disabled", header.getDisabled());
+        this.attribute("skipped", header.getSkipped());
+        this.attribute("timestamp", header.getTimestamp());
+        this.attribute("hostname", header.getHostname());
+        this.attribute("id", header.getId());
+        this.attribute("package", header.getPackage());
+        this.writeProperties(header.getProperties());
+        this.testsuites++;
+    }
+
+    @Override
+    public void endTestsuite(Testsuite header) throws XMLStreamException {
+        this.text(SYSTEM_OUT, header.getSystemOut());
+        this.text(SYSTEM_ERR, header.getSystemErr());
+        this.end();
+    }
+
+    @Override
+    public void writeTestsuite(Testsuite ts) throws XMLStreamException {
+        this.startTestsuite(ts);
+        for (Testcase tc : ts.getTestcase())
+            this.writeTestcase(tc);
+        this.endTestsuite(ts);
+    }
+
+    @Override
+    public void writeTestcase(Testcase tc) throws XMLStreamException {
+        this.start(TESTCASE);
+        this.attribute("name", tc.getName());
+        this.attribute("assertions", tc.getAssertions());
+        this.attribute("time", tc.getTime());
+        this.attribute("classname", tc.getClassname());
+        this.text(SKIPPED, tc.getSkipped());
+        for (Error e : tc.getError())
+            this.message(ERROR, e.getType(), e.getMessage(), e.getContent());
+        for (Failure f : tc.getFailure())
+            this.message(FAILURE, f.getType(), f.getMessage(), f.getContent());
+        for (String out : tc.getSystemOut())
+            this.text(SYSTEM_OUT, out);
+        for (String err : tc.getSystemErr())
+            this.text(SYSTEM_ERR, err);
+        this.writeProperties(tc.getProperties());
+        this.end();
+        this.testcases++;
+    }
+
+    @Override
+    public void writeProperties(Properties props) throws XMLStreamException {
+        if (props == null)
+            return;
+        this.start(PROPERTIES);
+        for (Property p : props.getProperty()) {
+            this.newline(this.depth);
+            this.put('<');
+            this.raw(PROPERTY);
+            this.attribute("name", p.getName());
+            this.attribute("value", p.getValue());
+            this.raw(EMPTY_CLOSE);
+            this.hasChildren = true;
+            this.properties++;
+        }
+        this.end();
+    }
+
+    @Override
+    public int getTestsuiteCount() {
+        return testsuites;
+    }
+
+    @Override
+    public int getTestcaseCount() {
+        return testcases;
+    }
+
+    @Override
+    public int getPropertyCount() {
+        return properties;
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        this.drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            while (this.depth > this.base)
+                this.end();
+            this.closeStart();
+            if (this.base == 0)
+                this.put('\n');
+            this.drain();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    private void start(byte[] name) throws XMLStreamException {
+        this.newline(this.depth);
+        this.put('<');
+        this.raw(name);
+        this.startOpen = true;
+        this.open[this.depth - this.base] = name;
+        this.depth++;
+        this.hasChildren = false;
+    }
+
+    private void end() throws XMLStreamException {
+        this.depth--;
+        if (this.startOpen) {
+            // No children or text, so it is written as an empty element tag like JAXB does
+            this.raw(EMPTY_CLOSE);
+            this.startOpen = false;
+        } else {
+            if (this.hasChildren)
+                this.newline(this.depth);
+            this.put('<');
+            this.put('/');
+            this.raw(this.open[this.depth - this.base]);
+            this.put('>');
+        }
+        this.hasChildren = true;
+    }
+
+    private void closeStart() throws XMLStreamException {
+        if (this.startOpen) {
+            this.put('>');
+            this.startOpen = false;
+        }
+    }
+
+    private void newline(int level) throws XMLStreamException {
+        this.closeStart();
+        this.raw(NEWLINES[Math.min(level, MAX_DEPTH - 1)]);
+    }
+
+    private void attribute(String name, String value) throws XMLStreamException {
+        if (value == null)
+            return;
+        this.put(' ');
+        this.ascii(name);
+        this.put('=');
+        this.put('"');
+        this.escape(value, true);
+        this.put('"');
+    }
+
+    private void text(byte[] name, String value) throws XMLStreamException {
+        if (value == null)
+            return;
+        this.newline(this.depth);
+        this.put('<');
+        this.raw(name);
+        this.put('>');
+        this.escape(value, false);
+        this.put('<');
+        this.put('/');
+        this.raw(name);
+        this.put('>');
+        this.hasChildren = true;
+    }
+
+    private void message(byte[] name, String type, String msg, String content) throws XMLStreamException {
+        this.newline(this.depth);
+        this.put('<');
+        this.raw(name);
+        this.attribute("type", type);
+        this.attribute("message", msg);
+        if (content == null)
+            this.raw(EMPTY_CLOSE);
+        else {
+            this.put('>');
+            this.escape(content, false);
+            this.put('<');
+            this.put('/');
+            this.raw(name);
+            this.put('>');
+        }
+        this.hasChildren = true;
+    }
+
+    /**
+     * Escapes and UTF-8 encodes s into the buffer
+     *
+     * @param attr true to escape a double quote as well, as is needed inside an attribute value
+     */
+    private void escape(String s, boolean attr) throws XMLStreamException {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c == '&')
+                    this.raw(AMP);
+                else if (c == '<')
+                    this.raw(LT);
+                else if (c == '>')
+                    this.raw(GT);
+                else if (c == '"' && attr)
+                    this.raw(QUOT);
+                else
+                    this.put(c);
+            } else if (c < 0x800) {
+                this.put(0xC0 | (c >> 6));
+                this.put(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                this.put(0xF0 | (cp >> 18));
+                this.put(0x80 | ((cp >> 12) & 0x3F));
+                this.put(0x80 | ((cp >> 6) & 0x3F));
+                this.put(0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // An unpaired surrogate can't be encoded, the JDK's encoder writes a ? for it too
+                this.put('?');
+            } else {
+                this.put(0xE0 | (c >> 12));
+                this.put(0x80 | ((c >> 6) & 0x3F));
+                this.put(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void ascii(String s) throws XMLStreamException {
+        for (int i = 0; i < s.length(); i++)
+            this.put(s.charAt(i));
+    }
+
+    private void put(int b) throws XMLStreamException {
+        if (this.pos == this.buf.length)
+            this.drain();
+        this.buf[this.pos++] = (byte) b;
+    }
+
+    private void raw(byte[] bytes) throws XMLStreamException {
+        if (bytes.length > this.buf.length - this.pos)
+            this.drain();
+        System.arraycopy(bytes, 0, this.buf, this.pos, bytes.length);
+        this.pos += bytes.length;
+    }
+
+    private void drain() throws XMLStreamException {
+        ByteBuffer bb = ByteBuffer.wrap(this.buf, 0, this.pos);
+        try {
+            while (bb.hasRemaining())
+                this.channel.write(bb);
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+        this.pos = 0;
+    }
+
+    private static FileChannel channel(File out) throws IOException {
+        return FileChannel.open(out.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
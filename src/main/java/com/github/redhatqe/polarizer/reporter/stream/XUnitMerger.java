@@ -0,0 +1,409 @@
+package com.github.redhatqe.polarizer.reporter.stream;
+
+import com.github.redhatqe.polarizer.reporter.exceptions.InvalidArgumentError;
+import com.github.redhatqe.polarizer.reporter.exceptions.XMLMarshallError;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Properties;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Property;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+import com.github.redhatqe.polarizer.reporter.jaxb.IJAXBHelper;
+import com.github.redhatqe.polarizer.reporter.jaxb.JAXBHelper;
+import com.github.redhatqe.polarizer.reporter.jaxb.JAXBRegistry;
+import com.github.redhatqe.polarizer.reporter.utils.FileHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges several xunit files (eg the testng-polarion.xml of each node a suite was sharded across) into one.
+ * <p>
+ * The merge makes two streaming passes over the inputs.  The first only reads the start tags and properties to find
+ * every &lt;testsuite&gt;, count the testcases of those with the same name by outcome and collect their
+ * properties.  The second writes the merged file, pulling the testcases of each merged testsuite from the inputs one
+ * at a time.  The tests/failures/errors/skipped of each merged testsuite are the counts of its testcases, not the
+ * sums of the inputs' attributes, which are only checked against them: a testcase with an &lt;error&gt; is an error,
+ * else one with a &lt;failure&gt; a failure, else one with a &lt;skipped&gt; skipped.  The disabled and time attributes
+ * are summed.  Each input keeps an open reader that only moves forward as long as the inputs list their testsuites in
+ * the same order, so memory use depends on the size of a testcase rather than the size of the files.
+ * <p>
+ * The &lt;properties&gt; of the &lt;testsuites&gt; and of each merged &lt;testsuite&gt; are deduplicated by name.  If
+ * two inputs disagree on the value of a property, the first one wins and a warning is logged.
+ */
+public class XUnitMerger {
+    private final static Logger logger = LoggerFactory.getLogger(XUnitMerger.class);
+    private final static XMLInputFactory factory = XMLInputFactory.newFactory();
+    private final static String[] COUNTS = {"tests", "failures", "errors", "disabled", "skipped"};
+    // The attributes counted from the testcases, in the order of Suite.counts
+    private final static String[] COUNTED = {"tests", "failures", "errors", "skipped"};
+    private final static String USAGE = "Usage: XUnitMerger merged.xml xunit-file-dir-or-glob...\n"
+            + "The totals of each merged testsuite are counted from its testcases.  When the inputs disagree on the "
+            + "value of a property, the value from the first input wins and only a warning is logged.";
+
+    private final List<File> inputs;
+    private final Map<String, Property> suitesProps = new LinkedHashMap<>();
+    private final Map<String, String> suitesAttrs = new HashMap<>();
+    private final Map<String, Suite> suites = new LinkedHashMap<>();
+    private int testcases = 0;
+
+    /**
+     * One &lt;testsuite&gt; of the output and where its testcases come from
+     */
+    private static class Suite {
+        final String name;
+        final Map<String, String> attrs = new HashMap<>();
+        final Map<String, Property> props = new LinkedHashMap<>();
+        // (index of the input, ordinal of the <testsuite> in the input) for each part of the suite
+        final List<int[]> segments = new ArrayList<>();
+        // tests, failures, errors and skipped counted from the testcases
+        final long[] counts = new long[COUNTED.length];
+
+        Suite(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Counts a testcase, by the child elements it had
+         */
+        void count(boolean error, boolean failure, boolean skipped) {
+            this.counts[0]++;
+            if (error)
+                this.counts[2]++;
+            else if (failure)
+                this.counts[1]++;
+            else if (skipped)
+                this.counts[3]++;
+        }
+
+        /**
+         * @return the attribute counted from the testcases, after logging a warning if the inputs' sum for it differs
+         */
+        String counted(int i) {
+            String summed = this.attrs.get(COUNTED[i]);
+            if (summed != null && Long.parseLong(summed) != this.counts[i])
+                logger.warn(String.format("The %s of testsuite %s add up to %s in the inputs, but it has %d such "
+                        + "testcases.  Using %d", COUNTED[i], this.name, summed, this.counts[i], this.counts[i]));
+            return Long.toString(this.counts[i]);
+        }
+    }
+
+    /**
+     * A forward only reader over one input, positioned by how many &lt;testsuite&gt; start tags it has gone past
+     */
+    private static class Cursor implements Closeable {
+        private final File file;
+        private InputStream is;
+        private XMLEventReader reader;
+        private int ordinal;
+
+        Cursor(File file) {
+            this.file = file;
+        }
+
+        /**
+         * Moves to just after the start tag of the n-th &lt;testsuite&gt; of the file, reopening it if it has already
+         * gone past it
+         */
+        XMLEventReader seek(int n) throws IOException, XMLStreamException {
+            if (this.reader == null || this.ordinal > n) {
+                this.close();
+                this.is = new BufferedInputStream(new FileInputStream(this.file), 1 << 16);
+                this.reader = factory.createXMLEventReader(this.is);
+                this.ordinal = -1;
+            }
+            while (this.ordinal < n) {
+                XMLEvent e = this.reader.nextEvent();
+                if (e.isStartElement() && e.asStartElement().getName().getLocalPart().equals("testsuite"))
+                    this.ordinal++;
+            }
+            return this.reader;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (this.reader != null)
+                    this.reader.close();
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            } finally {
+                if (this.is != null)
+                    this.is.close();
+                this.reader = null;
+                this.is = null;
+            }
+        }
+    }
+
+    public XUnitMerger(List<File> inputs) {
+        this.inputs = inputs;
+    }
+
+    /**
+     * Merges the inputs into out
+     *
+     * @param out where to write the merged xunit file
+     */
+    public void merge(File out) throws IOException, XMLStreamException {
+        for (int i = 0; i < this.inputs.size(); i++)
+            this.index(i);
+
+        List<Cursor> cursors = new ArrayList<>();
+        this.inputs.forEach(f -> cursors.add(new Cursor(f)));
+        Unmarshaller um = JAXBRegistry.unmarshaller(Testcase.class);
+
+        try (XUnitStreamWriter writer = new XUnitStreamWriter(out)) {
+            writer.startTestsuites(this.header());
+            for (Suite suite : this.suites.values()) {
+                Testsuite ts = XUnitMerger.header(suite);
+                StringBuilder sysOut = new StringBuilder();
+                StringBuilder sysErr = new StringBuilder();
+                writer.startTestsuite(ts);
+                int before = this.testcases;
+                for (int[] seg : suite.segments) {
+                    XMLEventReader reader = cursors.get(seg[0]).seek(seg[1]);
+                    this.copyTestcases(reader, um, writer, sysOut, sysErr);
+                }
+                if (this.testcases - before != suite.counts[0])
+                    throw new XMLMarshallError(String.format("Testsuite %s had %d testcases when indexed but %d when "
+                            + "merged.  Was an input changed during the merge?", suite.name, suite.counts[0],
+                            this.testcases - before));
+                ts.setSystemOut(sysOut.length() == 0 ? null : sysOut.toString());
+                ts.setSystemErr(sysErr.length() == 0 ? null : sysErr.toString());
+                writer.endTestsuite(ts);
+            }
+        } finally {
+            for (Cursor c : cursors)
+                c.close();
+        }
+    }
+
+    public int getTestsuiteCount() {
+        return this.suites.size();
+    }
+
+    public int getTestcaseCount() {
+        return this.testcases;
+    }
+
+    /**
+     * First pass over one input: records its testsuites, their attributes, the outcomes of their testcases and all the
+     * properties
+     */
+    private void index(int input) throws IOException, XMLStreamException {
+        File file = this.inputs.get(input);
+        int ordinal = 0;
+        Suite current = null;
+        // The child elements of the testcase being read, if any: error, failure and skipped
+        boolean[] outcome = null;
+        Deque<String> open = new ArrayDeque<>();
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            XMLStreamReader reader = factory.createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.END_ELEMENT) {
+                        if (open.pop().equals("testcase") && outcome != null && "testsuite".equals(open.peek())) {
+                            current.count(outcome[0], outcome[1], outcome[2]);
+                            outcome = null;
+                        }
+                        continue;
+                    }
+                    if (event != XMLStreamConstants.START_ELEMENT)
+                        continue;
+
+                    String local = reader.getLocalName();
+                    String parent = open.peek();
+                    if (local.equals("testsuites") && parent == null) {
+                        XUnitMerger.sum(this.suitesAttrs, reader);
+                        if (reader.getAttributeValue(null, "name") != null)
+                            this.suitesAttrs.putIfAbsent("name", reader.getAttributeValue(null, "name"));
+                    } else if (local.equals("testsuite")) {
+                        String name = reader.getAttributeValue(null, "name");
+                        current = this.suites.computeIfAbsent(name, Suite::new);
+                        current.segments.add(new int[]{input, ordinal++});
+                        XUnitMerger.sum(current.attrs, reader);
+                        for (String attr : new String[]{"timestamp", "hostname", "id", "package"}) {
+                            String value = reader.getAttributeValue(null, attr);
+                            if (value != null)
+                                current.attrs.putIfAbsent(attr, value);
+                        }
+                    } else if (local.equals("testcase") && "testsuite".equals(parent) && current != null) {
+                        outcome = new boolean[3];
+                    } else if (outcome != null && "testcase".equals(parent)) {
+                        outcome[0] |= local.equals("error");
+                        outcome[1] |= local.equals("failure");
+                        outcome[2] |= local.equals("skipped");
+                    } else if (local.equals("property") && "properties".equals(parent)) {
+                        String owner = XUnitMerger.grandparent(open);
+                        if ("testsuites".equals(owner))
+                            XUnitMerger.addProperty(this.suitesProps, reader, file);
+                        else if ("testsuite".equals(owner) && current != null)
+                            XUnitMerger.addProperty(current.props, reader, file);
+                    }
+                    open.push(local);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Second pass over one segment: writes its testcases and collects the text of its system-out and system-err
+     */
+    private void copyTestcases(XMLEventReader reader, Unmarshaller um, XUnitStreamWriter writer,
+                               StringBuilder sysOut, StringBuilder sysErr) throws XMLStreamException {
+        while (reader.hasNext()) {
+            XMLEvent e = reader.peek();
+            if (e.isEndElement() && e.asEndElement().getName().getLocalPart().equals("testsuite")) {
+                reader.nextEvent();
+                return;
+            }
+            if (!e.isStartElement()) {
+                reader.nextEvent();
+                continue;
+            }
+            String local = e.asStartElement().getName().getLocalPart();
+            if (local.equals("testcase")) {
+                try {
+                    writer.writeTestcase(um.unmarshal(reader, Testcase.class).getValue());
+                } catch (JAXBException ex) {
+                    throw new XMLMarshallError("Could not read a testcase", ex);
+                }
+                this.testcases++;
+            } else if (local.equals("system-out") || local.equals("system-err")) {
+                reader.nextEvent();
+                StringBuilder sb = local.equals("system-out") ? sysOut : sysErr;
+                if (sb.length() > 0)
+                    sb.append('\n');
+                sb.append(reader.getElementText());
+            } else
+                reader.nextEvent();
+        }
+    }
+
+    private Testsuites header() {
+        Testsuites ts = new Testsuites();
+        ts.setName(this.suitesAttrs.get("name"));
+        ts.setTests(this.total(0));
+        ts.setFailures(this.total(1));
+        ts.setErrors(this.total(2));
+        ts.setDisabled(this.suitesAttrs.get("disabled"));
+        ts.setTime(this.suitesAttrs.get("time"));
+        ts.setProperties(XUnitMerger.properties(this.suitesProps));
+        return ts;
+    }
+
+    /**
+     * @return the i-th of COUNTED over all the merged testsuites
+     */
+    private String total(int i) {
+        return Long.toString(this.suites.values().stream().mapToLong(s -> s.counts[i]).sum());
+    }
+
+    private static Testsuite header(Suite suite) {
+        Testsuite ts = new Testsuite();
+        ts.setName(suite.name);
+        ts.setTests(suite.counted(0));
+        ts.setFailures(suite.counted(1));
+        ts.setErrors(suite.counted(2));
+        ts.setTime(suite.attrs.get("time"));
+        ts.setDisabled(suite.attrs.get("disabled"));
+        ts.setSkipped(suite.counted(3));
+        ts.setTimestamp(suite.attrs.get("timestamp"));
+        ts.setHostname(suite.attrs.get("hostname"));
+        ts.setId(suite.attrs.get("id"));
+        ts.setPackage(suite.attrs.get("package"));
+        ts.setProperties(XUnitMerger.properties(suite.props));
+        return ts;
+    }
+
+    /**
+     * Adds the count attributes and the time of the element the reader is on to the totals in attrs
+     */
+    private static void sum(Map<String, String> attrs, XMLStreamReader reader) {
+        for (String attr : COUNTS) {
+            String value = reader.getAttributeValue(null, attr);
+            if (value != null && !value.isEmpty())
+                attrs.merge(attr, value, (a, b) -> Long.toString(Long.parseLong(a) + Long.parseLong(b)));
+        }
+        String time = reader.getAttributeValue(null, "time");
+        if (time != null && !time.isEmpty())
+            attrs.merge("time", time, (a, b) -> new BigDecimal(a).add(new BigDecimal(b)).toPlainString());
+    }
+
+    private static void addProperty(Map<String, Property> props, XMLStreamReader reader, File file) {
+        Property prop = new Property();
+        prop.setName(reader.getAttributeValue(null, "name"));
+        prop.setValue(reader.getAttributeValue(null, "value"));
+        Property first = props.putIfAbsent(prop.getName(), prop);
+        if (first != null && first.getValue() != null && !first.getValue().equals(prop.getValue()))
+            logger.warn(String.format("Property %s is %s in %s, keeping the earlier value %s", prop.getName(),
+                    prop.getValue(), file, first.getValue()));
+    }
+
+    private static Properties properties(Map<String, Property> props) {
+        if (props.isEmpty())
+            return null;
+        Properties p = new Properties();
+        p.getProperty().addAll(props.values());
+        return p;
+    }
+
+    private static String grandparent(Deque<String> open) {
+        if (open.size() < 2)
+            return null;
+        return new ArrayList<>(open).get(1);
+    }
+
+    /**
+     * Merges xunit files from the command line and validates the result.  The totals of each merged testsuite are
+     * counted from its testcases.  When the inputs disagree on the value of a property, the value from the first input
+     * wins and only a warning is logged.
+     *
+     * @param args the file to write, followed by the xunit files, directories or globs to merge
+     */
+    public static void main(String[] args) throws IOException, XMLStreamException {
+        if (args.length < 2)
+            throw new InvalidArgumentError(USAGE);
+        File out = new File(args[0]);
+        List<File> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (FileHelper.isBatch(args[i]))
+                inputs.addAll(FileHelper.resolve(args[i]));
+            else
+                inputs.add(new File(args[i]));
+        }
+
+        XUnitMerger merger = new XUnitMerger(inputs);
+        merger.merge(out);
+        JAXBHelper jaxb = new JAXBHelper();
+        if (!IJAXBHelper.validateXML(out, jaxb.getXSDFromResource(Testsuites.class)))
+            throw new XMLMarshallError(String.format("Validation failed for %s", out));
+        System.out.printf("Merged %d files into %s: %d testsuites, %d testcases%n", inputs.size(), out,
+                merger.getTestsuiteCount(), merger.getTestcaseCount());
+    }
+}
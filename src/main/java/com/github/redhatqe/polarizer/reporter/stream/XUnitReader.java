@@ -0,0 +1,196 @@
+package com.github.redhatqe.polarizer.reporter.stream;
+
+import com.github.redhatqe.polarizer.reporter.exceptions.XMLUnmarshallError;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Properties;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Property;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.jaxb.JAXBRegistry;
+import com.github.redhatqe.polarizer.reporter.utils.Tuple;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the testcases of an xunit file lazily, as a Stream that unmarshals one &lt;testcase&gt; at a time.
+ * <p>
+ * Only the testcase being handed out and the header of its testsuite are held in memory, so a stream over a results
+ * file of any size runs in constant memory.  The file is closed when the stream is closed or when its last testcase
+ * has been read, so streams should be used in a try-with-resources block if they might not be read to the end:
+ *
+ * <pre>
+ *     try (Stream&lt;Testcase&gt; tcs = XUnitReader.testcases(xunit)) {
+ *         long failed = tcs.filter(tc -&gt; !tc.getFailure().isEmpty()).count();
+ *     }
+ * </pre>
+ */
+public class XUnitReader {
+    private final static XMLInputFactory factory = XMLInputFactory.newFactory();
+
+    private XUnitReader() {
+
+    }
+
+    /**
+     * @param xunit an xunit file whose root is &lt;testsuites&gt; or a lone &lt;testsuite&gt;
+     * @return every testcase of the file, in document order
+     */
+    public static Stream<Testcase> testcases(File xunit) {
+        return XUnitReader.entries(xunit).map(e -> e.second);
+    }
+
+    /**
+     * Like testcases(), but pairs each testcase with the testsuite it belongs to.  The Testsuite holds the attributes
+     * and properties of the &lt;testsuite&gt; but none of its testcases (nor its system-out and system-err, which
+     * come after them), and the same instance is shared by all the testcases of a testsuite.
+     *
+     * @param xunit an xunit file whose root is &lt;testsuites&gt; or a lone &lt;testsuite&gt;
+     * @return (testsuite header, testcase) for every testcase of the file, in document order
+     */
+    public static Stream<Tuple<Testsuite, Testcase>> entries(File xunit) {
+        Entries entries = new Entries(xunit);
+        return StreamSupport.stream(entries, false).onClose(entries::close);
+    }
+
+    /**
+     * Walks an XMLStreamReader from one &lt;testcase&gt; start tag to the next
+     */
+    private static class Entries extends Spliterators.AbstractSpliterator<Tuple<Testsuite, Testcase>> {
+        private final File xunit;
+        private final InputStream is;
+        private final XMLStreamReader reader;
+        private Testsuite current = null;
+        // After a testcase is unmarshalled the reader already sits on the next event, which has not been looked at
+        private boolean pending = false;
+        private boolean closed = false;
+
+        Entries(File xunit) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.xunit = xunit;
+            try {
+                this.is = new BufferedInputStream(new FileInputStream(xunit), 1 << 16);
+            } catch (IOException e) {
+                throw new XMLUnmarshallError(String.format("Could not open %s", xunit), e);
+            }
+            try {
+                this.reader = factory.createXMLStreamReader(this.is);
+            } catch (XMLStreamException e) {
+                this.closeInput();
+                throw new XMLUnmarshallError(String.format("Could not read %s", xunit), e);
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Tuple<Testsuite, Testcase>> action) {
+            if (this.closed)
+                return false;
+            try {
+                while (true) {
+                    int event;
+                    if (this.pending) {
+                        event = this.reader.getEventType();
+                        this.pending = false;
+                    } else
+                        event = this.reader.hasNext() ? this.reader.next() : XMLStreamConstants.END_DOCUMENT;
+
+                    if (event == XMLStreamConstants.END_DOCUMENT) {
+                        this.close();
+                        return false;
+                    }
+                    if (event != XMLStreamConstants.START_ELEMENT)
+                        continue;
+
+                    String local = this.reader.getLocalName();
+                    if (local.equals("testsuite"))
+                        this.current = XUnitReader.header(this.reader);
+                    else if (local.equals("properties")) {
+                        // Testcase properties are unmarshalled along with their testcase, so these belong to either
+                        // the current testsuite or the testsuites element
+                        Properties props = XUnitReader.readProperties(this.reader);
+                        if (this.current != null)
+                            this.current.setProperties(props);
+                    } else if (local.equals("testcase")) {
+                        Testcase tc = JAXBRegistry.unmarshaller(Testcase.class)
+                                .unmarshal(this.reader, Testcase.class)
+                                .getValue();
+                        this.pending = true;
+                        action.accept(new Tuple<>(this.current, tc));
+                        return true;
+                    }
+                }
+            } catch (XMLStreamException | JAXBException e) {
+                this.close();
+                throw new XMLUnmarshallError(String.format("Could not read a testcase from %s", this.xunit), e);
+            }
+        }
+
+        void close() {
+            if (this.closed)
+                return;
+            this.closed = true;
+            try {
+                this.reader.close();
+            } catch (XMLStreamException e) {
+                // Nothing was written, so there is nothing to lose
+            } finally {
+                this.closeInput();
+            }
+        }
+
+        private void closeInput() {
+            try {
+                this.is.close();
+            } catch (IOException e) {
+                // Same as above
+            }
+        }
+    }
+
+    private static Testsuite header(XMLStreamReader reader) {
+        Testsuite ts = new Testsuite();
+        ts.setName(reader.getAttributeValue(null, "name"));
+        ts.setTests(reader.getAttributeValue(null, "tests"));
+        ts.setFailures(reader.getAttributeValue(null, "failures"));
+        ts.setErrors(reader.getAttributeValue(null, "errors"));
+        ts.setTime(reader.getAttributeValue(null, "time"));
+        ts.setDisabled(reader.getAttributeValue(null, "disabled"));
+        ts.setSkipped(reader.getAttributeValue(null, "skipped"));
+        ts.setTimestamp(reader.getAttributeValue(null, "timestamp"));
+        ts.setHostname(reader.getAttributeValue(null, "hostname"));
+        ts.setId(reader.getAttributeValue(null, "id"));
+        ts.setPackage(reader.getAttributeValue(null, "package"));
+        return ts;
+    }
+
+    /**
+     * Reads the &lt;property&gt; elements up to the end of the &lt;properties&gt; the reader is on
+     */
+    private static Properties readProperties(XMLStreamReader reader) throws XMLStreamException {
+        Properties props = new Properties();
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("properties"))
+                break;
+            if (event == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("property")) {
+                Property prop = new Property();
+                prop.setName(reader.getAttributeValue(null, "name"));
+                prop.setValue(reader.getAttributeValue(null, "value"));
+                props.getProperty().add(prop);
+            }
+        }
+        return props;
+    }
+}
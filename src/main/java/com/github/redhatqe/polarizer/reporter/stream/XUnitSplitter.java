@@ -0,0 +1,491 @@
+package com.github.redhatqe.polarizer.reporter.stream;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.redhatqe.polarizer.reporter.exceptions.InvalidArgumentError;
+import com.github.redhatqe.polarizer.reporter.exceptions.XMLMarshallError;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Properties;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Property;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+import com.github.redhatqe.polarizer.reporter.jaxb.IJAXBHelper;
+import com.github.redhatqe.polarizer.reporter.jaxb.JAXBHelper;
+import com.github.redhatqe.polarizer.reporter.jaxb.JAXBRegistry;
+import com.github.redhatqe.polarizer.reporter.utils.FileHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits an xunit file into several smaller ones that the Polarion xunit importer can take one at a time.
+ * <p>
+ * The input is read in one streaming pass and cut at testsuite/testcase boundaries, so that no chunk holds more than
+ * maxTestcases testcases or (apart from a single testcase that is bigger than the budget on its own) more than
+ * maxBytes bytes.  A testsuite that does not fit is continued in the next chunk under the same name and properties,
+ * with its tests/failures/errors/skipped/time counted over the testcases of each part, the same way XUnitMerger
+ * counts them: a testcase with an &lt;error&gt; is an error, else one with a &lt;failure&gt; a failure, else one with
+ * a &lt;skipped&gt; skipped.  The system-out and system-err of a testsuite go with its last part, which is moved to a
+ * new chunk of its own if they would not fit in the budget.  The &lt;properties&gt; of the
+ * &lt;testsuites&gt; (the polarion-* settings of the import) are repeated in every chunk, so each chunk is a complete
+ * xunit file that validates against xunit.xsd and can be imported, or retried, on its own.
+ * <p>
+ * The chunks are written to &lt;dir&gt;/&lt;name&gt;-001.xml, &lt;dir&gt;/&lt;name&gt;-002.xml and so on, and are
+ * listed in order in &lt;dir&gt;/&lt;name&gt;-manifest.json.
+ */
+public class XUnitSplitter {
+    private final static Logger logger = LoggerFactory.getLogger(XUnitSplitter.class);
+    private final static XMLInputFactory factory = XMLInputFactory.newFactory();
+    // Room left for the count attributes of a testsuite, which are only known once its part is closed
+    private final static int COUNT_SLACK = 96;
+    private final static int TAIL = "\n</testsuites>\n".length();
+
+    private final long maxBytes;
+    private final int maxTestcases;
+
+    private Testsuites header;
+    private File dir;
+    private String base;
+    private URL xsd;
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    // The chunk being written
+    private XUnitStreamWriter writer;
+    private CountingOutputStream counter;
+    private File chunkFile;
+    private int chunkTestsuites;
+    private int chunkTestcases;
+
+    // The part of the current testsuite that goes into the current chunk, spooled until its counts are known
+    private File spool;
+    private OutputStream partOut;
+    private long partBytes;
+    private int partTestcases;
+    private int partFailures;
+    private int partErrors;
+    private int partSkipped;
+    private BigDecimal partTime;
+
+    // Each testcase is written here first to find out how big it is
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 12);
+    private XUnitStreamWriter fragment;
+
+    /**
+     * One of the files an xunit file was split into
+     */
+    public static class Chunk {
+        @JsonProperty
+        public final String file;
+        @JsonProperty
+        public final int testsuites;
+        @JsonProperty
+        public final int testcases;
+        @JsonProperty
+        public final long bytes;
+
+        Chunk(String file, int testsuites, int testcases, long bytes) {
+            this.file = file;
+            this.testsuites = testsuites;
+            this.testcases = testcases;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The testsuite being split: its attributes and properties, which every part of it gets
+     */
+    private static class Suite {
+        final Map<String, String> attrs = new HashMap<>();
+        Properties props = null;
+        int headerBytes = -1;
+        boolean written = false;
+    }
+
+    /**
+     * Counts the bytes that get past the XMLStreamWriter, so the size of a chunk is known without flushing it to disk
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream os) {
+            super(os);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+    }
+
+    /**
+     * @param maxBytes the most bytes in a chunk, or 0 for no limit
+     * @param maxTestcases the most testcases in a chunk, or 0 for no limit
+     */
+    public XUnitSplitter(long maxBytes, int maxTestcases) {
+        if (maxBytes < 0 || maxTestcases < 0)
+            throw new InvalidArgumentError("the chunk budgets can not be negative");
+        if (maxBytes == 0 && maxTestcases == 0)
+            throw new InvalidArgumentError("at least one of the chunk budgets must be set");
+        this.maxBytes = maxBytes;
+        this.maxTestcases = maxTestcases;
+    }
+
+    /**
+     * Splits an xunit file into chunks, validates each of them and writes the manifest
+     *
+     * @param in the xunit file to split
+     * @param dir the directory to write the chunks and the manifest to
+     * @return the chunks in the order they were written
+     */
+    public List<Chunk> split(File in, File dir) throws IOException, XMLStreamException {
+        if (!dir.exists() && !dir.mkdirs())
+            throw new InvalidArgumentError(String.format("Could not create %s", dir));
+        this.dir = dir;
+        this.base = in.getName().replaceFirst("\\.xml$", "");
+        this.xsd = new JAXBHelper().getXSDFromResource(Testsuites.class);
+        this.header = new Testsuites();
+        this.chunks.clear();
+
+        Unmarshaller um = JAXBRegistry.unmarshaller(Testcase.class);
+
+        this.spool = FileHelper.makeTempFile("/tmp", "polarion-split-", ".xml", "rw-rw----");
+        this.fragment = XUnitStreamWriter.fragment(this.buffer, 2);
+        try (InputStream is = new BufferedInputStream(new FileInputStream(in), 1 << 16)) {
+            XMLEventReader reader = factory.createXMLEventReader(is);
+            try {
+                while (reader.hasNext()) {
+                    XMLEvent e = reader.nextEvent();
+                    if (!e.isStartElement())
+                        continue;
+                    StartElement se = e.asStartElement();
+                    String local = se.getName().getLocalPart();
+                    if (local.equals("testsuites"))
+                        this.header.setName(XUnitSplitter.attribute(se, "name"));
+                    else if (local.equals("properties"))
+                        this.header.setProperties(XUnitSplitter.readProperties(reader));
+                    else if (local.equals("testsuite"))
+                        this.splitSuite(se, reader, um);
+                }
+            } finally {
+                reader.close();
+            }
+            if (this.writer == null)
+                this.openChunk();
+            this.closeChunk();
+        } finally {
+            if (this.writer != null)
+                this.writer.close();
+            if (this.partOut != null)
+                this.partOut.close();
+            this.fragment.close();
+            if (!this.spool.delete())
+                logger.warn(String.format("Could not delete %s", this.spool));
+        }
+
+        this.writeManifest(in);
+        return Collections.unmodifiableList(this.chunks);
+    }
+
+    /**
+     * @return where split() wrote the manifest for an input
+     */
+    public static File manifest(File in, File dir) {
+        return new File(dir, in.getName().replaceFirst("\\.xml$", "") + "-manifest.json");
+    }
+
+    /**
+     * Reads one &lt;testsuite&gt; whose start tag was just read, writing its testcases into as many chunks as needed
+     */
+    private void splitSuite(StartElement se, XMLEventReader reader, Unmarshaller um)
+            throws IOException, XMLStreamException {
+        Suite suite = new Suite();
+        for (String attr : new String[]{"name", "timestamp", "hostname", "id", "package"}) {
+            String value = XUnitSplitter.attribute(se, attr);
+            if (value != null)
+                suite.attrs.put(attr, value);
+        }
+        String sysOut = null;
+        String sysErr = null;
+
+        while (reader.hasNext()) {
+            XMLEvent e = reader.peek();
+            if (e.isEndElement() && e.asEndElement().getName().getLocalPart().equals("testsuite")) {
+                reader.nextEvent();
+                break;
+            }
+            if (!e.isStartElement()) {
+                reader.nextEvent();
+                continue;
+            }
+            String local = e.asStartElement().getName().getLocalPart();
+            if (local.equals("testcase")) {
+                try {
+                    this.addTestcase(suite, um.unmarshal(reader, Testcase.class).getValue());
+                } catch (JAXBException ex) {
+                    throw new XMLMarshallError("Could not read a testcase", ex);
+                }
+            } else if (local.equals("properties")) {
+                reader.nextEvent();
+                suite.props = XUnitSplitter.readProperties(reader);
+            } else if (local.equals("system-out")) {
+                reader.nextEvent();
+                sysOut = reader.getElementText();
+            } else if (local.equals("system-err")) {
+                reader.nextEvent();
+                sysErr = reader.getElementText();
+            } else
+                reader.nextEvent();
+        }
+
+        // The last part of a suite gets its system-out/err, and a suite without testcases is still written once
+        if (this.partTestcases > 0 || !suite.written) {
+            if (this.maxBytes > 0 && (sysOut != null || sysErr != null))
+                this.fitOutput(suite, sysOut, sysErr);
+            this.closePart(suite, sysOut, sysErr);
+        }
+    }
+
+    /**
+     * Makes room in the byte budget for the system-out and system-err of the last part of suite, by closing the part
+     * without them and starting a new chunk for them if need be
+     */
+    private void fitOutput(Suite suite, String sysOut, String sysErr) throws IOException, XMLStreamException {
+        if (this.writer == null)
+            this.openChunk();
+        int bare = XUnitSplitter.measure(this.partHeader(suite, null, null));
+        if (suite.headerBytes < 0)
+            suite.headerBytes = bare + COUNT_SLACK;
+        long output = XUnitSplitter.measure(this.partHeader(suite, sysOut, sysErr)) - bare;
+        if (this.projected(suite) + output <= this.maxBytes)
+            return;
+        if (this.chunkTestsuites > 0 || this.chunkTestcases > 0) {
+            if (this.partTestcases > 0)
+                this.closePart(suite, null, null);
+            this.closeChunk();
+            this.openChunk();
+            if (this.projected(suite) + output <= this.maxBytes)
+                return;
+        }
+        logger.warn(String.format("The system-out and system-err of testsuite %s are %d bytes, more than a chunk may "
+                + "hold by itself", suite.attrs.get("name"), output));
+    }
+
+    private void addTestcase(Suite suite, Testcase tc) throws IOException, XMLStreamException {
+        this.fragment.writeTestcase(tc);
+        this.fragment.flush();
+        int size = this.buffer.size();
+
+        if (suite.headerBytes < 0)
+            suite.headerBytes = XUnitSplitter.measure(this.partHeader(suite, null, null)) + COUNT_SLACK;
+        if (this.writer != null && this.chunkTestcases > 0) {
+            boolean full = this.maxTestcases > 0 && this.chunkTestcases >= this.maxTestcases;
+            full = full || (this.maxBytes > 0 && this.projected(suite) + size > this.maxBytes);
+            if (full) {
+                if (this.partTestcases > 0)
+                    this.closePart(suite, null, null);
+                this.closeChunk();
+            }
+        }
+        if (this.writer == null)
+            this.openChunk();
+        if (this.maxBytes > 0 && this.chunkTestcases == 0 && this.projected(suite) + size > this.maxBytes)
+            logger.warn(String.format("Testcase %s.%s is %d bytes, more than a chunk may hold by itself",
+                    tc.getClassname(), tc.getName(), size));
+
+        if (this.partOut == null)
+            this.partOut = new BufferedOutputStream(new FileOutputStream(this.spool), 1 << 16);
+        this.buffer.writeTo(this.partOut);
+        this.buffer.reset();
+        this.partBytes += size;
+        this.partTestcases++;
+        this.chunkTestcases++;
+        if (!tc.getError().isEmpty())
+            this.partErrors++;
+        else if (!tc.getFailure().isEmpty())
+            this.partFailures++;
+        else if (tc.getSkipped() != null)
+            this.partSkipped++;
+        if (tc.getTime() != null && !tc.getTime().isEmpty()) {
+            try {
+                BigDecimal time = new BigDecimal(tc.getTime());
+                this.partTime = this.partTime == null ? time : this.partTime.add(time);
+            } catch (NumberFormatException ex) {
+                logger.warn(String.format("Ignoring the time %s of %s.%s", tc.getTime(), tc.getClassname(),
+                        tc.getName()));
+            }
+        }
+    }
+
+    /**
+     * @return how big the current chunk would be if it were closed with the current part of suite in it
+     */
+    private long projected(Suite suite) {
+        return this.counter.count + suite.headerBytes + this.partBytes + TAIL;
+    }
+
+    private void openChunk() throws IOException, XMLStreamException {
+        this.chunkFile = new File(this.dir, String.format("%s-%03d.xml", this.base, this.chunks.size() + 1));
+        this.counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(this.chunkFile),
+                1 << 16));
+        this.writer = new XUnitStreamWriter(this.counter);
+        this.writer.startTestsuites(this.header);
+        this.writer.flush();
+        this.chunkTestsuites = 0;
+        this.chunkTestcases = 0;
+    }
+
+    private void closeChunk() throws IOException {
+        XUnitStreamWriter w = this.writer;
+        this.writer = null;
+        w.close();
+        long bytes = this.chunkFile.length();
+        if (!IJAXBHelper.validateXML(this.chunkFile, this.xsd))
+            throw new XMLMarshallError(String.format("Validation failed for %s", this.chunkFile));
+        this.chunks.add(new Chunk(this.chunkFile.toString(), this.chunkTestsuites, this.chunkTestcases, bytes));
+        logger.info(String.format("Wrote %s: %d testsuites, %d testcases, %d bytes", this.chunkFile,
+                this.chunkTestsuites, this.chunkTestcases, bytes));
+    }
+
+    /**
+     * Writes the spooled part of suite into the current chunk under a testsuite of its own
+     */
+    private void closePart(Suite suite, String sysOut, String sysErr) throws IOException, XMLStreamException {
+        if (this.writer == null)
+            this.openChunk();
+        if (this.partOut != null) {
+            this.partOut.close();
+            this.partOut = null;
+        }
+
+        Testsuite ts = this.partHeader(suite, sysOut, sysErr);
+        this.writer.startTestsuite(ts);
+        if (this.partTestcases > 0)
+            this.writer.writeFragment(this.spool, this.partTestcases);
+        this.writer.endTestsuite(ts);
+        this.writer.flush();
+        suite.written = true;
+        this.chunkTestsuites++;
+
+        this.partBytes = 0;
+        this.partTestcases = 0;
+        this.partFailures = 0;
+        this.partErrors = 0;
+        this.partSkipped = 0;
+        this.partTime = null;
+    }
+
+    private Testsuite partHeader(Suite suite, String sysOut, String sysErr) {
+        Testsuite ts = new Testsuite();
+        ts.setName(suite.attrs.get("name"));
+        ts.setTests(Integer.toString(this.partTestcases));
+        ts.setFailures(Integer.toString(this.partFailures));
+        ts.setErrors(Integer.toString(this.partErrors));
+        ts.setSkipped(Integer.toString(this.partSkipped));
+        ts.setTime(this.partTime == null ? null : this.partTime.toPlainString());
+        ts.setTimestamp(suite.attrs.get("timestamp"));
+        ts.setHostname(suite.attrs.get("hostname"));
+        ts.setId(suite.attrs.get("id"));
+        ts.setPackage(suite.attrs.get("package"));
+        ts.setProperties(suite.props);
+        ts.setSystemOut(sysOut);
+        ts.setSystemErr(sysErr);
+        return ts;
+    }
+
+    private void writeManifest(File in) throws IOException {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("source", in.toString());
+        manifest.put("max-bytes", this.maxBytes);
+        manifest.put("max-testcases", this.maxTestcases);
+        manifest.put("chunks", this.chunks);
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(XUnitSplitter.manifest(in, this.dir), manifest);
+    }
+
+    /**
+     * @return how many bytes the start and end tags and the properties of a testsuite take up
+     */
+    private static int measure(Testsuite ts) throws IOException, XMLStreamException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (XUnitStreamWriter w = XUnitStreamWriter.fragment(bos, 1)) {
+            w.startTestsuite(ts);
+            w.endTestsuite(ts);
+        }
+        return bos.size();
+    }
+
+    /**
+     * Reads the &lt;property&gt; elements up to the end of the &lt;properties&gt; whose start tag was just read
+     */
+    private static Properties readProperties(XMLEventReader reader) throws XMLStreamException {
+        Properties props = new Properties();
+        while (reader.hasNext()) {
+            XMLEvent e = reader.nextEvent();
+            if (e.isEndElement() && e.asEndElement().getName().getLocalPart().equals("properties"))
+                break;
+            if (e.isStartElement() && e.asStartElement().getName().getLocalPart().equals("property")) {
+                Property prop = new Property();
+                prop.setName(XUnitSplitter.attribute(e.asStartElement(), "name"));
+                prop.setValue(XUnitSplitter.attribute(e.asStartElement(), "value"));
+                props.getProperty().add(prop);
+            }
+        }
+        return props;
+    }
+
+    private static String attribute(StartElement se, String attr) {
+        Attribute a = se.getAttributeByName(new QName(attr));
+        return a == null ? null : a.getValue();
+    }
+
+    /**
+     * Splits an xunit file from the command line
+     *
+     * @param args the xunit file, the directory to write the chunks to, the most bytes per chunk and the most
+     *             testcases per chunk (0 for no limit)
+     */
+    public static void main(String[] args) throws IOException, XMLStreamException {
+        if (args.length < 4)
+            throw new InvalidArgumentError("usage: XUnitSplitter <xunit> <dir> <max-bytes> <max-testcases>");
+        File in = new File(args[0]);
+        File dir = new File(args[1]);
+        XUnitSplitter splitter = new XUnitSplitter(Long.parseLong(args[2]), Integer.parseInt(args[3]));
+        List<Chunk> chunks = splitter.split(in, dir);
+        System.out.printf("Split %s into %d chunks, listed in %s%n", in, chunks.size(),
+                XUnitSplitter.manifest(in, dir));
+    }
+}
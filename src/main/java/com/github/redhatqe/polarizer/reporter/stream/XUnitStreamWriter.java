@@ -0,0 +1,346 @@
+package com.github.redhatqe.polarizer.reporter.stream;
+
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Error;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Failure;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Properties;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Property;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes an xunit file one element at a time with an XMLStreamWriter rather than marshalling a whole Testsuites tree.
+ *
+ * The element and attribute order follows the JAXB classes in importer.xunit (and therefore xunit.xsd), and the output
+ * is indented the same way JAXB_FORMATTED_OUTPUT does it.  Like JAXB, an element that ends up with no children or text
+ * is written as an empty element tag, so a start tag is held back until its first child or its end.  Typical use is:
+ *
+ * <pre>
+ *     try (XUnitStreamWriter w = new XUnitStreamWriter(file)) {
+ *         w.startTestsuites(header);
+ *         w.writeTestsuite(suite);  // as many times as needed
+ *     }
+ * </pre>
+ *
+ * A testsuite can also be written piecewise with startTestsuite, writeTestcase and endTestsuite when the testcases are
+ * produced lazily.  Closing the writer closes any open elements and the underlying file.
+ */
+public class XUnitStreamWriter implements XUnitWriter {
+    private final static String INDENT = "    ";
+    private final static String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+    private final OutputStream os;
+    private final XMLStreamWriter writer;
+    private int depth;
+    private final int base;
+    private boolean hasChildren = false;
+    // The element whose start tag is held back, and its attributes as name, value pairs
+    private String pending = null;
+    private final List<String> pendingAttrs = new ArrayList<>();
+    private int testsuites = 0;
+    private int testcases = 0;
+    private int properties = 0;
+
+    public XUnitStreamWriter(File out) throws IOException, XMLStreamException {
+        this(new BufferedOutputStream(new FileOutputStream(out), 1 << 16));
+    }
+
+    public XUnitStreamWriter(OutputStream os) throws IOException, XMLStreamException {
+        this(os, 0);
+        // Written by hand since XMLStreamWriter has no way to emit the standalone declaration JAXB writes
+        this.os.write(XML_DECLARATION.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private XUnitStreamWriter(OutputStream os, int depth) throws XMLStreamException {
+        this.os = os;
+        this.depth = depth;
+        this.base = depth;
+        this.writer = XMLOutputFactory.newFactory().createXMLStreamWriter(os, "UTF-8");
+    }
+
+    /**
+     * Creates a writer for a document fragment (no XML declaration or root element) whose elements are indented as if
+     * they were nested depth levels deep.  The fragment can later be spliced into a full document with writeFragment.
+     *
+     * @param os where to write the fragment
+     * @param depth nesting level of the fragment's top level elements
+     * @return a writer for the fragment
+     */
+    public static XUnitStreamWriter fragment(OutputStream os, int depth) throws XMLStreamException {
+        return new XUnitStreamWriter(os, depth);
+    }
+
+    /**
+     * Copies a fragment written by a fragment() writer verbatim into the current position of this document
+     *
+     * @param fragment file holding the fragment
+     * @param testcases how many testcases the fragment holds
+     */
+    public void writeFragment(File fragment, int testcases) throws XMLStreamException, IOException {
+        this.testcases += testcases;
+        if (fragment.length() == 0)
+            return;
+        // Force any pending start tag to be closed before writing around the XMLStreamWriter
+        this.open();
+        this.writer.writeCharacters("");
+        this.writer.flush();
+        Files.copy(fragment.toPath(), this.os);
+        this.hasChildren = true;
+    }
+
+    /**
+     * Writes the opening &lt;testsuites&gt; tag (with the attributes from the header) and its &lt;properties&gt;.  Any
+     * Testsuite elements in the header are ignored.
+     *
+     * @param header Testsuites holding the attributes and properties to write
+     */
+    public void startTestsuites(Testsuites header) throws XMLStreamException {
+        this.start("testsuites");
+        this.attribute("name", header.getName());
+        this.attribute("time", header.getTime());
+        this.attribute("tests", header.getTests());
+        this.attribute("failures", header.getFailures());
+        this.attribute("disabled", header.getDisabled());
+        this.attribute("errors", header.getErrors());
+        this.writeProperties(header.getProperties());
+    }
+
+    public void endTestsuites() throws XMLStreamException {
+        this.end();
+    }
+
+    /**
+     * Writes the opening &lt;testsuite&gt; tag and its &lt;properties&gt;.  Any Testcase elements in the header are
+     * ignored.
+     *
+     * @param header Testsuite holding the attributes and properties to write
+     */
+    public void startTestsuite(Testsuite header) throws XMLStreamException {
+        this.start("testsuite");
+        this.attribute("name", header.getName());
+        this.attribute("tests", header.getTests());
+        this.attribute("failures", header.getFailures());
+        this.attribute("errors", header.getErrors());
+        this.attribute("time", header.getTime());
+        this.attribute("disabled", header.getDisabled());
+        this.attribute("skipped", header.getSkipped());
+        this.attribute("timestamp", header.getTimestamp());
+        this.attribute("hostname", header.getHostname());
+        this.attribute("id", header.getId());
+        this.attribute("package", header.getPackage());
+        this.writeProperties(header.getProperties());
+        this.testsuites++;
+    }
+
+    /**
+     * Closes the currently open &lt;testsuite&gt;, writing the system-out and system-err of the header first
+     *
+     * @param header the same Testsuite that was passed to startTestsuite
+     */
+    public void endTestsuite(Testsuite header) throws XMLStreamException {
+        this.text("system-out", header.getSystemOut());
+        this.text("system-err", header.getSystemErr());
+        this.end();
+    }
+
+    /**
+     * Writes a complete &lt;testsuite&gt; element including all of its testcases
+     *
+     * @param ts the Testsuite to write
+     */
+    public void writeTestsuite(Testsuite ts) throws XMLStreamException {
+        this.startTestsuite(ts);
+        for (Testcase tc : ts.getTestcase())
+            this.writeTestcase(tc);
+        this.endTestsuite(ts);
+    }
+
+    public void writeTestcase(Testcase tc) throws XMLStreamException {
+        this.start("testcase");
+        this.attribute("name", tc.getName());
+        this.attribute("assertions", tc.getAssertions());
+        this.attribute("time", tc.getTime());
+        this.attribute("classname", tc.getClassname());
+        this.text("skipped", tc.getSkipped());
+        for (Error e : tc.getError())
+            this.message("error", e.getType(), e.getMessage(), e.getContent());
+        for (Failure f : tc.getFailure())
+            this.message("failure", f.getType(), f.getMessage(), f.getContent());
+        for (String out : tc.getSystemOut())
+            this.text("system-out", out);
+        for (String err : tc.getSystemErr())
+            this.text("system-err", err);
+        this.writeProperties(tc.getProperties());
+        this.end();
+        this.testcases++;
+    }
+
+    public void writeProperties(Properties props) throws XMLStreamException {
+        if (props == null)
+            return;
+        this.start("properties");
+        for (Property p : props.getProperty()) {
+            this.newline(this.depth);
+            this.writer.writeEmptyElement("property");
+            this.attribute("name", p.getName());
+            this.attribute("value", p.getValue());
+            this.hasChildren = true;
+            this.properties++;
+        }
+        this.end();
+    }
+
+    public int getTestsuiteCount() {
+        return testsuites;
+    }
+
+    public int getTestcaseCount() {
+        return testcases;
+    }
+
+    public int getPropertyCount() {
+        return properties;
+    }
+
+    /**
+     * Writes out everything but a start tag held back by start, so that a fragment ends on a complete element
+     */
+    public void flush() throws XMLStreamException {
+        // The XMLStreamWriter only finishes an empty element tag at the next event, not on flush
+        this.writer.writeCharacters("");
+        this.writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            while (this.depth > this.base)
+                this.end();
+            this.writer.flush();
+            this.writer.close();
+            if (this.base == 0)
+                this.os.write('\n');
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            this.os.close();
+        }
+    }
+
+    private void newline(int level) throws XMLStreamException {
+        this.open();
+        StringBuilder sb = new StringBuilder("\n");
+        for (int i = 0; i < level; i++)
+            sb.append(INDENT);
+        this.writer.writeCharacters(sb.toString());
+    }
+
+    private void start(String name) throws XMLStreamException {
+        this.newline(this.depth);
+        this.pending = name;
+        this.pendingAttrs.clear();
+        this.depth++;
+        this.hasChildren = false;
+    }
+
+    /**
+     * Writes the start tag held back by start, if there is one, as a child or text is about to be written
+     */
+    private void open() throws XMLStreamException {
+        if (this.pending == null)
+            return;
+        this.writer.writeStartElement(this.pending);
+        this.writePendingAttrs();
+    }
+
+    private void end() throws XMLStreamException {
+        this.depth--;
+        if (this.pending != null) {
+            this.writer.writeEmptyElement(this.pending);
+            this.writePendingAttrs();
+        } else {
+            if (this.hasChildren)
+                this.newline(this.depth);
+            this.writer.writeEndElement();
+        }
+        this.hasChildren = true;
+    }
+
+    private void writePendingAttrs() throws XMLStreamException {
+        this.pending = null;
+        for (int i = 0; i < this.pendingAttrs.size(); i += 2)
+            this.writer.writeAttribute(this.pendingAttrs.get(i), this.pendingAttrs.get(i + 1));
+        this.pendingAttrs.clear();
+    }
+
+    private void attribute(String name, String value) throws XMLStreamException {
+        if (value == null)
+            return;
+        value = XUnitStreamWriter.clean(value);
+        if (this.pending != null) {
+            this.pendingAttrs.add(name);
+            this.pendingAttrs.add(value);
+        } else
+            this.writer.writeAttribute(name, value);
+    }
+
+    /**
+     * @return s with every unpaired surrogate replaced by a ?, as the JDK's UTF-8 encoder does.  The XMLStreamWriter
+     * would pair it with whatever char follows instead, which can be the &lt; of the next tag
+     */
+    static String clean(String s) {
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!Character.isSurrogate(c))
+                continue;
+            if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                i++;
+                continue;
+            }
+            if (sb == null)
+                sb = new StringBuilder(s);
+            sb.setCharAt(i, '?');
+        }
+        return sb == null ? s : sb.toString();
+    }
+
+    private void text(String name, String value) throws XMLStreamException {
+        if (value == null)
+            return;
+        this.newline(this.depth);
+        this.writer.writeStartElement(name);
+        this.writer.writeCharacters(XUnitStreamWriter.clean(value));
+        this.writer.writeEndElement();
+        this.hasChildren = true;
+    }
+
+    private void message(String name, String type, String msg, String content) throws XMLStreamException {
+        this.newline(this.depth);
+        if (content == null) {
+            this.writer.writeEmptyElement(name);
+            this.attribute("type", type);
+            this.attribute("message", msg);
+        } else {
+            this.writer.writeStartElement(name);
+            this.attribute("type", type);
+            this.attribute("message", msg);
+            this.writer.writeCharacters(XUnitStreamWriter.clean(content));
+            this.writer.writeEndElement();
+        }
+        this.hasChildren = true;
+    }
+}
@@ -0,0 +1,282 @@
+package com.github.redhatqe.polarizer.reporter.stream;
+
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Property;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Rewrites the properties of an xunit file as it is read, with an XMLEventReader feeding an XMLEventWriter, so the
+ * file is never held in memory as a Testsuites tree.
+ * <p>
+ * Only the &lt;properties&gt; of the &lt;testsuites&gt; and of each &lt;testcase&gt; are buffered (so they can be
+ * handed to the handlers and written back), everything else is copied through as it is read.  If the root element
+ * is a lone &lt;testsuite&gt;, it is wrapped in a &lt;testsuites&gt; element.  The output is re-indented the same way
+ * XUnitStreamWriter does it, while the text of elements such as &lt;failure&gt; or &lt;system-out&gt; is kept as is.
+ */
+public class XUnitTransformer {
+    private final static String INDENT = "    ";
+    private final static String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+    private final static Set<String> TEXT_ELEMENTS =
+            new HashSet<>(Arrays.asList("skipped", "error", "failure", "system-out", "system-err"));
+
+    /**
+     * Updates the properties of a &lt;testcase&gt;
+     */
+    @FunctionalInterface
+    public interface TestcaseHandler {
+        /**
+         * @param classname the classname attribute of the testcase
+         * @param name the name attribute of the testcase
+         * @param props the properties the testcase already has, to be modified in place
+         */
+        void accept(String classname, String name, List<Property> props);
+    }
+
+    private final TestcaseHandler testcaseHandler;
+    private final Consumer<List<Property>> suitesHandler;
+    private final XMLEventFactory events = XMLEventFactory.newFactory();
+
+    private XMLEventWriter writer;
+    // Names of the open elements of the input, and whether each one has had a child element written
+    private final Deque<String> open = new ArrayDeque<>();
+    private final Deque<Boolean> children = new ArrayDeque<>();
+    private boolean wrapped = false;
+    private boolean suitesPropsPending = false;
+    private List<Property> collecting = null;
+    private boolean testcaseHasProps = false;
+    private String classname = null;
+    private String name = null;
+    private int testcases = 0;
+    private int properties = 0;
+
+    /**
+     * @param testcaseHandler called with the properties of every testcase
+     * @param suitesHandler called with the properties of the testsuites element
+     */
+    public XUnitTransformer(TestcaseHandler testcaseHandler, Consumer<List<Property>> suitesHandler) {
+        this.testcaseHandler = testcaseHandler;
+        this.suitesHandler = suitesHandler;
+    }
+
+    public void transform(File in, File out) throws IOException, XMLStreamException {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(in), 1 << 16);
+             OutputStream os = new BufferedOutputStream(new FileOutputStream(out), 1 << 16)) {
+            this.transform(is, os);
+        }
+    }
+
+    /**
+     * Reads an xunit document from is and writes the transformed document to os.  Neither stream is closed.
+     */
+    public void transform(InputStream is, OutputStream os) throws IOException, XMLStreamException {
+        XMLEventReader reader = XMLInputFactory.newFactory().createXMLEventReader(is);
+        // Written by hand for the same reason as in XUnitStreamWriter
+        os.write(XML_DECLARATION.getBytes(StandardCharsets.UTF_8));
+        this.writer = XMLOutputFactory.newFactory().createXMLEventWriter(os, "UTF-8");
+        try {
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement())
+                    this.start(event.asStartElement());
+                else if (event.isEndElement())
+                    this.end(event.asEndElement().getName().getLocalPart());
+                else if (event.isCharacters())
+                    this.characters(event.asCharacters());
+                // The declaration, comments and processing instructions are dropped, the same as when unmarshalling
+            }
+            this.writer.add(this.events.createCharacters("\n"));
+            this.writer.flush();
+        } finally {
+            reader.close();
+            this.writer.close();
+        }
+    }
+
+    public int getTestcaseCount() {
+        return testcases;
+    }
+
+    public int getPropertyCount() {
+        return properties;
+    }
+
+    private void start(StartElement se) throws XMLStreamException {
+        String local = se.getName().getLocalPart();
+        String parent = this.open.peek();
+
+        if (this.collecting != null) {
+            if (local.equals("property"))
+                this.collecting.add(XUnitTransformer.property(se));
+            this.open.push(local);
+            return;
+        }
+
+        if (parent == null && local.equals("testsuite")) {
+            // A lone <testsuite>, so put it inside a <testsuites> that only holds the suite level properties
+            this.wrapped = true;
+            this.writeStart(this.events.createStartElement("", "", "testsuites"));
+            this.open.push("testsuites");
+            List<Property> props = new ArrayList<>();
+            this.suitesHandler.accept(props);
+            this.writeProperties(props);
+            parent = "testsuites";
+        }
+
+        if ("testsuites".equals(parent) && this.suitesPropsPending) {
+            this.suitesPropsPending = false;
+            if (local.equals("properties")) {
+                this.collecting = new ArrayList<>();
+                this.open.push(local);
+                return;
+            }
+            List<Property> props = new ArrayList<>();
+            this.suitesHandler.accept(props);
+            this.writeProperties(props);
+        }
+
+        if ("testcase".equals(parent) && local.equals("properties")) {
+            this.collecting = new ArrayList<>();
+            this.testcaseHasProps = true;
+            this.open.push(local);
+            return;
+        }
+
+        if (local.equals("testsuites"))
+            this.suitesPropsPending = true;
+        else if (local.equals("testcase")) {
+            this.classname = XUnitTransformer.attribute(se, "classname");
+            this.name = XUnitTransformer.attribute(se, "name");
+            this.testcaseHasProps = false;
+            this.testcases++;
+        }
+        this.writeStart(se);
+        this.open.push(local);
+    }
+
+    private void end(String local) throws XMLStreamException {
+        this.open.pop();
+        if (this.collecting != null) {
+            if (!local.equals("properties"))
+                return;
+            List<Property> props = this.collecting;
+            this.collecting = null;
+            if ("testsuites".equals(this.open.peek()))
+                this.suitesHandler.accept(props);
+            else
+                this.testcaseHandler.accept(this.classname, this.name, props);
+            this.writeProperties(props);
+            return;
+        }
+
+        if (local.equals("testcase") && !this.testcaseHasProps) {
+            List<Property> props = new ArrayList<>();
+            this.testcaseHandler.accept(this.classname, this.name, props);
+            this.writeProperties(props);
+        } else if (local.equals("testsuites") && this.suitesPropsPending) {
+            this.suitesPropsPending = false;
+            List<Property> props = new ArrayList<>();
+            this.suitesHandler.accept(props);
+            this.writeProperties(props);
+        }
+        this.writeEnd(local);
+
+        if (this.wrapped && this.open.size() == 1) {
+            this.open.pop();
+            this.writeEnd("testsuites");
+        }
+    }
+
+    private void characters(Characters chars) throws XMLStreamException {
+        if (this.collecting != null)
+            return;
+        String parent = this.open.peek();
+        // Whitespace between elements is replaced by our own indentation, text inside elements is kept as is
+        if (parent != null && (TEXT_ELEMENTS.contains(parent) || !chars.isWhiteSpace()))
+            this.writer.add(chars);
+    }
+
+    private void writeStart(StartElement se) throws XMLStreamException {
+        this.indent();
+        this.writer.add(se);
+        this.children.push(false);
+    }
+
+    private void writeEnd(String local) throws XMLStreamException {
+        boolean hadChildren = this.children.pop();
+        if (hadChildren && !TEXT_ELEMENTS.contains(local))
+            this.newline(this.children.size());
+        this.writer.add(this.events.createEndElement("", "", local));
+    }
+
+    private void writeProperties(List<Property> props) throws XMLStreamException {
+        if (props.isEmpty())
+            return;
+        this.writeStart(this.events.createStartElement("", "", "properties"));
+        for (Property p : props) {
+            this.indent();
+            this.writer.add(this.events.createStartElement("", "", "property"));
+            this.writer.add(this.events.createAttribute("name", p.getName() == null ? "" : p.getName()));
+            this.writer.add(this.events.createAttribute("value", p.getValue() == null ? "" : p.getValue()));
+            this.writer.add(this.events.createEndElement("", "", "property"));
+            this.properties++;
+        }
+        this.writeEnd("properties");
+    }
+
+    /**
+     * Starts a new line for a child element of the innermost open element
+     */
+    private void indent() throws XMLStreamException {
+        if (!this.children.isEmpty()) {
+            this.children.pop();
+            this.children.push(true);
+        }
+        this.newline(this.children.size());
+    }
+
+    private void newline(int depth) throws XMLStreamException {
+        StringBuilder sb = new StringBuilder("\n");
+        for (int i = 0; i < depth; i++)
+            sb.append(INDENT);
+        this.writer.add(this.events.createCharacters(sb.toString()));
+    }
+
+    private static Property property(StartElement se) {
+        Property prop = new Property();
+        prop.setName(XUnitTransformer.attribute(se, "name"));
+        prop.setValue(XUnitTransformer.attribute(se, "value"));
+        return prop;
+    }
+
+    private static String attribute(StartElement se, String attr) {
+        Attribute a = se.getAttributeByName(new QName(attr));
+        return a == null ? null : a.getValue();
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.redhatqe.polarizer.reporter.stream;
+
+import com.github.redhatqe.polarizer.reporter.configuration.ReportInfo;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Properties;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes an xunit file one element at a time.  See XUnitStreamWriter for how the methods fit together.
+ * <p>
+ * XUnitStreamWriter goes through an XMLStreamWriter, XUnitDirectWriter encodes the bytes itself.  Both produce the
+ * same output, so which one is used (the report.writer setting) only changes how fast the file gets written.
+ */
+public interface XUnitWriter extends Closeable {
+    /**
+     * @param out the file to write
+     * @param kind ReportInfo.DIRECT for an XUnitDirectWriter, anything else for an XUnitStreamWriter
+     * @return a writer for a whole xunit document
+     */
+    static XUnitWriter open(File out, String kind) throws IOException, XMLStreamException {
+        if (ReportInfo.DIRECT.equals(kind))
+            return new XUnitDirectWriter(out);
+        return new XUnitStreamWriter(out);
+    }
+
+    /**
+     * @param out the file to write the fragment to
+     * @param depth nesting level of the fragment's top level elements
+     * @param kind ReportInfo.DIRECT for an XUnitDirectWriter, anything else for an XUnitStreamWriter
+     * @return a writer for a document fragment, as made by the fragment() method of the chosen class
+     */
+    static XUnitWriter fragment(File out, int depth, String kind) throws IOException, XMLStreamException {
+        if (ReportInfo.DIRECT.equals(kind))
+            return XUnitDirectWriter.fragment(out, depth);
+        return XUnitStreamWriter.fragment(new BufferedOutputStream(new FileOutputStream(out), 1 << 16), depth);
+    }
+
+    void writeFragment(File fragment, int testcases) throws XMLStreamException, IOException;
+
+    void startTestsuites(Testsuites header) throws XMLStreamException;
+
+    void endTestsuites() throws XMLStreamException;
+
+    void startTestsuite(Testsuite header) throws XMLStreamException;
+
+    void endTestsuite(Testsuite header) throws XMLStreamException;
+
+    void writeTestsuite(Testsuite ts) throws XMLStreamException;
+
+    void writeTestcase(Testcase tc) throws XMLStreamException;
+
+    void writeProperties(Properties props) throws XMLStreamException;
+
+    int getTestsuiteCount();
+
+    int getTestcaseCount();
+
+    int getPropertyCount();
+
+    void flush() throws XMLStreamException;
+}
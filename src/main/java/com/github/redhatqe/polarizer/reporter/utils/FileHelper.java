@@ -1,23 +1,25 @@
 package com.github.redhatqe.polarizer.reporter.utils;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.github.redhatqe.polarizer.reporter.IdParams;
-import org.apache.camel.util.StringHelper;
+import com.github.redhatqe.polarizer.reporter.exceptions.InvalidArgumentError;
+import com.github.redhatqe.polarizer.reporter.mapping.MappingParser;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 public class FileHelper implements IFileHelper {
@@ -74,6 +76,56 @@ public class FileHelper implements IFileHelper {
         return !f.exists() || f.delete();
     }
 
+    /**
+     * @param arg a path or a glob
+     * @return true if arg names a directory or contains glob characters
+     */
+    public static boolean isBatch(String arg) {
+        return new File(arg).isDirectory() || arg.matches(".*[*?\\[{].*");
+    }
+
+    /**
+     * Finds the xunit files a directory or glob names
+     *
+     * @param arg a directory, in which case every .xml file directly in it is used, or a glob such as
+     *            results/shard-*&#47;testng-results.xml
+     * @return the matching files, sorted by path
+     */
+    public static List<File> resolve(String arg) {
+        File dir = new File(arg);
+        Path base;
+        PathMatcher matcher;
+        int depth;
+        if (dir.isDirectory()) {
+            base = dir.toPath();
+            matcher = p -> p.getFileName().toString().endsWith(".xml");
+            depth = 1;
+        } else {
+            // Walk from the deepest directory in front of the first glob character
+            Path glob = Paths.get(arg).toAbsolutePath().normalize();
+            base = glob.getRoot();
+            for (Path part : glob) {
+                if (part.toString().matches(".*[*?\\[{].*"))
+                    break;
+                base = base.resolve(part);
+            }
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            depth = arg.contains("**") ? Integer.MAX_VALUE : glob.getNameCount() - base.getNameCount();
+        }
+
+        PathMatcher m = matcher;
+        try (Stream<Path> paths = Files.walk(base, depth)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(p -> m.matches(dir.isDirectory() ? p : p.toAbsolutePath().normalize()))
+                    .sorted()
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new InvalidArgumentError(String.format("Could not list xunit files for %s: %s", arg,
+                    e.getMessage()));
+        }
+    }
+
     /**
      * From the path pointing to a mapping.json file, create a Map from it
      *
@@ -81,47 +133,58 @@ public class FileHelper implements IFileHelper {
      * of the form Project -> IdParams.  This second map is needed because one test method is often used across multiple
      * projects.
      *
+     * The returned maps, and the parameter list of each IdParams, are new mutable copies the caller can change.  A
+     * file that does not exist or can not be read gives an empty map.  For a sharded mapping directory every shard is
+     * read.  The reporter itself looks methods up through MappingIndex, which shares one unmodifiable parse of the
+     * file and only reads the shards that are looked up.
      *
-     * @param fpath path to a mapping.json file
+     * @param fpath path to a mapping.json file, or to a sharded mapping directory
      * @return an in-memory map of unique methodname -> project -> IdParams
      */
     public static Map<String, Map<String, IdParams>> loadMapping(File fpath) {
-        ObjectMapper mapper = new ObjectMapper();
-
         Map<String, Map<String, IdParams>> mapped = new HashMap<>();
+        if (!fpath.exists())
+            return mapped;
         try {
-            if (fpath.exists()) {
-                // First key is name, second is project, third is "id" or "parameters"
-                JsonNode node = mapper.readTree(fpath);
-                node.fields().forEachRemaining(entry -> {
-                    String name = entry.getKey();
-                    JsonNode projectToInner = entry.getValue();
-                    Map<String, IdParams> innerMap = new HashMap<>();
-                    projectToInner.fields().forEachRemaining(e -> {
-                        String project = e.getKey();
-                        JsonNode inner = e.getValue();
-                        String id = inner.get("id").toString();
-
-                        IdParams idp = new IdParams();
-                        idp.id = StringHelper.removeQuotes(id);
-                        JsonNode paramNode = inner.get("parameters");
-                        if (paramNode instanceof ArrayNode) {
-                            ArrayNode params = (ArrayNode) paramNode;
-                            idp.parameters = params.findValuesAsText("parameters");
-                            List<String> p = new ArrayList<>();
-                            for(int i = 0; i < params.size(); i++) {
-                                p.add(StringHelper.removeQuotes(params.get(i).toString()));
-                            }
-                            idp.parameters = p;
-                        }
-                        innerMap.put(project, idp);
-                    });
-                    mapped.put(name, innerMap);
-                });
-            }
+            Map<String, Map<String, IdParams>> parsed = fpath.isDirectory() ? MappingParser.parseShards(fpath)
+                    : MappingParser.parse(fpath);
+            parsed.forEach((name, projects) -> mapped.put(name, FileHelper.copy(projects)));
         } catch (IOException e) {
             e.printStackTrace();
         }
         return mapped;
     }
+
+    /**
+     * Like loadMapping(File), but only reads the entries of one project, skipping the others as the file is parsed
+     *
+     * @param fpath path to a mapping.json file, or to a sharded mapping directory
+     * @param project the Polarion project
+     * @return a mutable map of unique methodname -> IdParams for project
+     */
+    public static Map<String, IdParams> loadMapping(File fpath, String project) {
+        if (!fpath.exists())
+            return new HashMap<>();
+        if (fpath.isDirectory())
+            return FileHelper.loadMapping(fpath).entrySet().stream()
+                    .filter(e -> e.getValue().containsKey(project))
+                    .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().get(project), (a, b) -> a,
+                            HashMap::new));
+        try {
+            return FileHelper.copy(MappingParser.parse(fpath, project).getMethods());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * @return a mutable copy of ids, with mutable copies of the IdParams in it, since MappingParser shares both
+     */
+    private static Map<String, IdParams> copy(Map<String, IdParams> ids) {
+        Map<String, IdParams> copied = new HashMap<>();
+        ids.forEach((key, idp) -> copied.put(key, new IdParams(idp.getId(),
+                idp.getParameters() == null ? null : new ArrayList<>(idp.getParameters()))));
+        return copied;
+    }
 }
@@ -0,0 +1,75 @@
+package com.github.redhatqe.polarizer.reporter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class DiagnosticsSinkTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void logAndSummaryEndUpInTheReportDirectory() throws IOException {
+        File spool = this.tmp.newFolder();
+        File out = this.tmp.newFolder();
+        DiagnosticsSink sink = new DiagnosticsSink(spool);
+        sink.unmapped("a.B.c", "PROJ");
+        sink.unmapped("a.B.c", "PROJ");
+        sink.unmapped("a.B.d", "PROJ");
+        assertEquals(1, spool.list().length);
+        sink.close(out);
+
+        assertEquals(0, spool.list().length);
+        assertEquals(new File(out, DiagnosticsSink.LOG), sink.getLog());
+        assertEquals(Arrays.asList("a.B.c does not exist in mapping file for Project PROJ",
+                "a.B.d does not exist in mapping file for Project PROJ"),
+                Files.readAllLines(sink.getLog().toPath(), StandardCharsets.UTF_8));
+        JsonNode summary = new ObjectMapper().readTree(new File(out, DiagnosticsSink.SUMMARY));
+        assertEquals(2, summary.size());
+        assertEquals("a.B.c", summary.get(0).get("method").asText());
+        assertEquals(2, summary.get(0).get("count").asInt());
+    }
+
+    @Test
+    public void cleanRunRemovesTheFilesOfAnEarlierOne() throws IOException {
+        File spool = this.tmp.newFolder();
+        File out = this.tmp.newFolder();
+        DiagnosticsSink first = new DiagnosticsSink(spool);
+        first.unmapped("a.B.c", "PROJ");
+        first.close(out);
+        assertTrue(new File(out, DiagnosticsSink.SUMMARY).exists());
+
+        DiagnosticsSink second = new DiagnosticsSink(spool);
+        second.close(out);
+        assertNull(second.getLog());
+        assertEquals(0, out.list().length);
+        assertEquals(0, spool.list().length);
+    }
+
+    @Test
+    public void summaryIsWrittenWhenTheLogCanNotBe() throws IOException {
+        // The spool directory does not exist, so the log can't be created in it
+        File spool = new File(this.tmp.getRoot(), "missing");
+        File out = this.tmp.newFolder();
+        DiagnosticsSink sink = new DiagnosticsSink(spool);
+        sink.unmapped("a.B.c", "PROJ");
+        sink.unmapped("a.B.c", "PROJ");
+        sink.close(out);
+
+        assertNull(sink.getLog());
+        assertFalse(new File(out, DiagnosticsSink.LOG).exists());
+        JsonNode summary = new ObjectMapper().readTree(new File(out, DiagnosticsSink.SUMMARY));
+        assertEquals(2, summary.get(0).get("count").asInt());
+        assertEquals(1, sink.getUnmapped().size());
+    }
+}
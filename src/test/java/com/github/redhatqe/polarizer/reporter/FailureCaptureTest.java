@@ -0,0 +1,85 @@
+package com.github.redhatqe.polarizer.reporter;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.redhatqe.polarizer.reporter.configuration.ReportInfo;
+import com.github.redhatqe.polarizer.reporter.exceptions.InvalidArgumentError;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FailureCaptureTest {
+    private static Throwable thrown() {
+        try {
+            throw new IllegalStateException("boom");
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+
+    @Test
+    public void defaultWritesEveryTraceInFull() {
+        FailureCapture capture = new FailureCapture(new ReportInfo());
+        Map<String, String> traces = new HashMap<>();
+        Throwable t = thrown();
+        String first = capture.content(t, traces, "a.B.c");
+        String second = capture.content(t, traces, "a.B.d");
+        assertEquals(capture.trace(t), first);
+        assertEquals(first, second);
+        assertFalse(first.startsWith("[trace "));
+    }
+
+    @Test
+    public void dedupeIsOptIn() throws IOException {
+        ReportInfo info = new ObjectMapper().readValue("{\"dedupe-traces\": true}", ReportInfo.class);
+        FailureCapture capture = new FailureCapture(info);
+        Map<String, String> traces = new HashMap<>();
+        Throwable t = thrown();
+        assertTrue(capture.content(t, traces, "a.B.c").startsWith("[trace "));
+        assertTrue(capture.content(t, traces, "a.B.d").contains("same stack trace as first reported by a.B.c"));
+    }
+
+    @Test
+    public void traceIsBounded() {
+        Throwable t = new RuntimeException("outer", thrown());
+        String trace = new FailureCapture(1, 1024, 0, false).trace(t);
+        assertEquals(2, trace.split("\n").length);
+        assertTrue(trace.endsWith(String.format("... %d more\n", t.getStackTrace().length - 1)));
+        assertFalse(trace.contains("Caused by"));
+    }
+
+    @Test
+    public void messageKeepsWholeCodePoints() {
+        FailureCapture capture = new FailureCapture(64, 5, 3, false);
+        assertEquals("abé", capture.truncate("abé😀"));
+    }
+
+    @Test(expected = InvalidArgumentError.class)
+    public void negativeMaxFramesIsRejected() {
+        new ReportInfo().setMaxFrames(-1);
+    }
+
+    @Test(expected = InvalidArgumentError.class)
+    public void negativeMaxMessageBytesIsRejected() {
+        new ReportInfo().setMaxMessageBytes(-1);
+    }
+
+    @Test(expected = InvalidArgumentError.class)
+    public void negativeCauseDepthIsRejected() {
+        new ReportInfo().setCauseDepth(-1);
+    }
+
+    @Test
+    public void negativeMaxFramesIsRejectedFromConfig() throws IOException {
+        try {
+            new ObjectMapper().readValue("{\"max-frames\": -3}", ReportInfo.class);
+            fail("max-frames -3 was accepted");
+        } catch (JsonMappingException e) {
+            assertTrue(e.getCause() instanceof InvalidArgumentError);
+        }
+    }
+}
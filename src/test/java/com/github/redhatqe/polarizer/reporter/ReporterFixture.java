@@ -0,0 +1,172 @@
+package com.github.redhatqe.polarizer.reporter;
+
+import org.testng.TestNG;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs TestNG on the sample classes below with the XUnitReporter (and optionally the XUnitStreamingListener), using a
+ * config and mapping.json written into a scratch directory
+ */
+public class ReporterFixture {
+    private final File dir;
+    private final File mapping;
+
+    public ReporterFixture(File dir) throws IOException {
+        this.dir = dir;
+        this.mapping = new File(dir, "mapping.json");
+        String mapped = String.join(",\n",
+                entry(Sample.class, "dp", "PROJ-1", "\"a\", \"b\""),
+                entry(Sample.class, "plain", "PROJ-2", ""),
+                entry(Dependent.class, "other", "PROJ-3", ""),
+                entry(Dependent.class, "other2", "PROJ-4", ""),
+                entry(Dependent.class, "skipped", "PROJ-5", ""));
+        Files.write(this.mapping.toPath(), ("{\n" + mapped + "\n}\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String entry(Class<?> clazz, String method, String id, String params) {
+        return String.format("  \"%s.%s\": {\"PROJ\": {\"id\": \"%s\", \"parameters\": [%s]}}", clazz.getName(), method,
+                id, params);
+    }
+
+    /**
+     * @param report the report section of the config, one "key: value" per line
+     * @return a config file using the scratch mapping.json
+     */
+    public File config(String name, String... report) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (InputStream is = ReporterFixture.class.getClassLoader().getResourceAsStream("reporter-test.yml")) {
+            byte[] buf = new byte[1 << 14];
+            int n;
+            StringBuilder sb = new StringBuilder();
+            while ((n = is.read(buf)) > 0)
+                sb.append(new String(buf, 0, n, StandardCharsets.UTF_8));
+            lines.addAll(Arrays.asList(sb.toString().split("\n")));
+        }
+        lines.add(String.format("mapping: \"%s\"", this.mapping));
+        lines.add("report:");
+        for (String r : report)
+            lines.add("  " + r);
+        File cfg = new File(this.dir, name + ".yml");
+        Files.write(cfg.toPath(), lines, StandardCharsets.UTF_8);
+        return cfg;
+    }
+
+    /**
+     * Runs the sample classes, two &lt;test&gt;s with one class each
+     *
+     * @param config config file for the reporter
+     * @param out the TestNG output directory
+     * @param listener whether to register the XUnitStreamingListener too
+     * @return the testng-polarion.xml written
+     */
+    public File run(File config, File out, boolean listener) {
+        if (listener)
+            return this.run(config, out, new XUnitStreamingListener(), new XUnitReporter());
+        return this.run(config, out, new XUnitReporter());
+    }
+
+    /**
+     * Runs the sample classes with the given listeners and reporters only
+     *
+     * @param config config file for the reporter
+     * @param out the TestNG output directory
+     * @param listeners the listeners and reporters to register
+     * @return the testng-polarion.xml the XUnitReporter writes, if it was one of them
+     */
+    public File run(File config, File out, Object... listeners) {
+        String previous = System.getProperty("polarize.config");
+        System.setProperty("polarize.config", config.getPath());
+        try {
+            XmlSuite suite = new XmlSuite();
+            suite.setName("fixture");
+            XmlTest t1 = new XmlTest(suite);
+            t1.setName("t1");
+            t1.setXmlClasses(Arrays.asList(new XmlClass(Sample.class)));
+            XmlTest t2 = new XmlTest(suite);
+            t2.setName("t2");
+            t2.setXmlClasses(Arrays.asList(new XmlClass(Dependent.class)));
+
+            TestNG testng = new TestNG();
+            testng.setXmlSuites(Arrays.asList(suite));
+            testng.setOutputDirectory(out.getPath());
+            testng.setUseDefaultListeners(false);
+            testng.setVerbose(0);
+            for (Object l : listeners)
+                testng.addListener(l);
+            testng.run();
+        } finally {
+            if (previous == null)
+                System.clearProperty("polarize.config");
+            else
+                System.setProperty("polarize.config", previous);
+        }
+        return new File(out, "testng-polarion.xml");
+    }
+
+    /**
+     * @return the report without the attributes that change from run to run.  The number of frames left out of a stack
+     * trace changes too, since the reflection frames under a test method change once TestNG's calls to it are inflated
+     */
+    public static String normalized(File report) throws IOException {
+        String xml = new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8);
+        return xml.replaceAll(" time=\"[^\"]*\"", "")
+                .replaceAll(" (timestamp|hostname)=\"[^\"]*\"", "")
+                .replaceAll("\\.\\.\\. \\d+ more", "... more");
+    }
+
+    public static class Sample {
+        @org.testng.annotations.DataProvider(name = "data")
+        public Object[][] data() {
+            Object[][] rows = new Object[10][];
+            for (int i = 0; i < rows.length; i++)
+                rows[i] = new Object[] {i, "x" + i};
+            return rows;
+        }
+
+        @org.testng.annotations.Test(dataProvider = "data")
+        public void dp(int a, String b) {
+            if (a % 7 == 0)
+                throw new RuntimeException("boom " + a);
+            if (a % 5 == 0)
+                throw new AssertionError("fail " + b);
+        }
+
+        @org.testng.annotations.Test
+        public void plain() {
+
+        }
+
+        @org.testng.annotations.Test
+        public void unmapped() {
+
+        }
+    }
+
+    public static class Dependent {
+        @org.testng.annotations.Test
+        public void other() {
+
+        }
+
+        @org.testng.annotations.Test(dependsOnMethods = "other2")
+        public void skipped() {
+
+        }
+
+        @org.testng.annotations.Test
+        public void other2() {
+            throw new AssertionError("x");
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.redhatqe.polarizer.reporter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class XUnitReporterTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private ReporterFixture fixture;
+
+    @Before
+    public void setUp() throws IOException {
+        this.fixture = new ReporterFixture(this.tmp.getRoot());
+    }
+
+    @Test
+    public void reportDoesNotDependOnThreads() throws IOException {
+        File one = this.fixture.config("one", "threads: 1", "max-frames: 1", "dedupe-traces: false");
+        File many = this.fixture.config("many", "threads: 4", "max-frames: 1", "dedupe-traces: false");
+        String sequential = ReporterFixture.normalized(this.fixture.run(one, this.tmp.newFolder(), false));
+        String parallel = ReporterFixture.normalized(this.fixture.run(many, this.tmp.newFolder(), false));
+        assertEquals(sequential, parallel);
+        assertTrue(sequential.contains("PROJ-2"));
+    }
+
+    @Test
+    public void unmappedMethodsAreReportedNextToTheReport() throws IOException {
+        File cfg = this.fixture.config("stax", "writer: stax");
+        File out = this.tmp.newFolder();
+        this.fixture.run(cfg, out, true);
+        JsonNode summary = new ObjectMapper().readTree(new File(out, DiagnosticsSink.SUMMARY));
+        assertEquals(1, summary.size());
+        assertEquals(ReporterFixture.Sample.class.getName() + ".unmapped", summary.get(0).get("method").asText());
+        assertEquals(1, summary.get(0).get("count").asInt());
+        assertTrue(new File(out, DiagnosticsSink.LOG).exists());
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.redhatqe.polarizer.reporter;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.testng.TestListenerAdapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class XUnitStreamingListenerTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private ReporterFixture fixture;
+
+    @Before
+    public void setUp() throws IOException {
+        this.fixture = new ReporterFixture(this.tmp.getRoot());
+    }
+
+    private void assertSameReport(String writer) throws IOException {
+        File cfg = this.fixture.config(writer, "writer: " + writer, "max-frames: 1", "dedupe-traces: false");
+        String walked = ReporterFixture.normalized(this.fixture.run(cfg, this.tmp.newFolder(), false));
+        String spooled = ReporterFixture.normalized(this.fixture.run(cfg, this.tmp.newFolder(), true));
+        assertEquals(walked, spooled);
+        assertTrue(walked.contains("PROJ-1"));
+        assertTrue(walked.contains("PROJ-4"));
+        // Skipped because other2 failed, so it was never invoked
+        assertFalse(walked.contains("PROJ-5"));
+    }
+
+    @Test
+    public void staxReportIsTheSameWithTheListener() throws IOException {
+        this.assertSameReport("stax");
+    }
+
+    @Test
+    public void directReportIsTheSameWithTheListener() throws IOException {
+        this.assertSameReport("direct");
+    }
+
+    @Test
+    public void jaxbReportDoesNotSpool() throws IOException {
+        File cfg = this.fixture.config("jaxb", "writer: jaxb", "max-frames: 1", "dedupe-traces: false");
+        String walked = ReporterFixture.normalized(this.fixture.run(cfg, this.tmp.newFolder(), false));
+        File out = this.tmp.newFolder();
+        String listened = ReporterFixture.normalized(this.fixture.run(cfg, out, true));
+        assertEquals(walked, listened);
+        assertFalse(new File(out, "fixture/polarion-spool").exists());
+    }
+
+    @Test
+    public void spoolsAreLeftInTheOutputDirectoryUntilTheReportIsWritten() throws IOException {
+        File cfg = this.fixture.config("stax", "writer: stax");
+        // Without the reporter, as if the JVM died before the report was written
+        File out = this.tmp.newFolder();
+        this.fixture.run(cfg, out, new XUnitStreamingListener());
+        File spool = new File(out, "fixture/polarion-spool/" + ReporterFixture.Sample.class.getName() + ".xml");
+        String fragment = new String(Files.readAllBytes(spool.toPath()), StandardCharsets.UTF_8);
+        assertTrue(fragment.contains("PROJ-1"));
+        assertTrue(fragment.contains("PROJ-2"));
+
+        File reported = this.tmp.newFolder();
+        this.fixture.run(cfg, reported, true);
+        assertFalse(new File(reported, "fixture/polarion-spool").exists());
+    }
+
+    @Test
+    public void missingMappingDoesNotStopTheTests() throws IOException {
+        File cfg = this.fixture.config("missing", "writer: stax");
+        List<String> lines = Files.readAllLines(cfg.toPath(), StandardCharsets.UTF_8);
+        lines.replaceAll(l -> l.startsWith("mapping:") ? "mapping: \"/nonexistent/mapping.json\"" : l);
+        Files.write(cfg.toPath(), lines, StandardCharsets.UTF_8);
+
+        TestListenerAdapter tests = new TestListenerAdapter();
+        this.fixture.run(cfg, this.tmp.newFolder(), new XUnitStreamingListener(), tests);
+        // Every invocation ran: the 12 of Sample and other and other2 of Dependent
+        assertEquals(14, tests.getPassedTests().size() + tests.getFailedTests().size());
+    }
+}
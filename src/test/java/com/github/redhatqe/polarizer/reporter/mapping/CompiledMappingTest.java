@@ -0,0 +1,166 @@
+package com.github.redhatqe.polarizer.reporter.mapping;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.redhatqe.polarizer.reporter.IdParams;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a mapping compiled by MappingCompiler gives back exactly what MappingParser reads from the mapping.json
+ */
+public class CompiledMappingTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File json;
+    // Method names that all have the same String.hashCode, half of them in the mapping and half not
+    private final List<String> colliding = new ArrayList<>();
+    private final List<String> missing = new ArrayList<>();
+
+    private static Map<String, Object> entry(String id, List<String> parameters) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("id", id);
+        if (parameters != null)
+            entry.put("parameters", parameters);
+        return entry;
+    }
+
+    /**
+     * "Aa" and "BB" have the same hashCode, so do all strings of the same length made of them
+     */
+    private static List<String> collisions(String prefix, int blocks) {
+        List<String> names = new ArrayList<>();
+        for (int bits = 0; bits < 1 << blocks; bits++) {
+            StringBuilder sb = new StringBuilder(prefix);
+            for (int b = 0; b < blocks; b++)
+                sb.append((bits & 1 << b) == 0 ? "Aa" : "BB");
+            names.add(sb.toString());
+        }
+        return names;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        Map<String, Map<String, Object>> mapping = new LinkedHashMap<>();
+        List<String> collisions = collisions("com.example.Collide.test", 7);
+        for (int i = 0; i < collisions.size(); i++) {
+            if (i % 2 == 0)
+                this.colliding.add(collisions.get(i));
+            else
+                this.missing.add(collisions.get(i));
+        }
+        for (String qual : this.colliding)
+            mapping.put(qual, Collections.singletonMap("PROJ",
+                    entry("PROJ-" + qual.hashCode() + "-" + mapping.size(), Collections.singletonList("p"))));
+
+        // Several projects, no parameters, empty parameters, non-ASCII strings and strings shared between fields
+        Map<String, Object> projects = new LinkedHashMap<>();
+        projects.put("PROJ", entry("PROJ-1", Arrays.asList("name", "count", "PROJ")));
+        projects.put("OTHER", entry("OTHER-1", null));
+        projects.put("ÉTÉ", entry("ÉTÉ-😀", Collections.emptyList()));
+        mapping.put("com.example.Many.projects", projects);
+        mapping.put("com.example.Many.name", Collections.singletonMap("OTHER", entry("PROJ-1", Arrays.asList("", ""))));
+        mapping.put("com.example.Ünïcode.tëst", Collections.singletonMap("PROJ", entry("PROJ-2", null)));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            List<String> params = new ArrayList<>();
+            for (int p = random.nextInt(4); p > 0; p--)
+                params.add("param" + random.nextInt(10));
+            mapping.put(String.format("com.example.pkg%d.Class%d.method%d", i % 7, i % 13, i),
+                    Collections.singletonMap(i % 3 == 0 ? "OTHER" : "PROJ", entry("PROJ-" + (1000 + i), params)));
+        }
+
+        this.json = this.tmp.newFile("mapping.json");
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(this.json, mapping);
+    }
+
+    @Test
+    public void compiledMatchesParsed() throws Exception {
+        Map<String, Map<String, IdParams>> parsed = MappingParser.parse(this.json);
+        File bin = this.tmp.newFile("mapping.bin");
+        assertEquals(parsed.size(), MappingCompiler.compile(this.json, bin));
+        assertTrue(CompiledMapping.isCompiled(bin));
+        assertFalse(CompiledMapping.isCompiled(this.json));
+
+        CompiledMapping compiled = CompiledMapping.open(bin);
+        assertEquals(parsed.size(), compiled.size());
+        parsed.forEach((qual, projects) -> {
+            Map<String, IdParams> found = compiled.get(qual);
+            assertNotNull(qual, found);
+            assertEquals(qual, projects.keySet(), found.keySet());
+            projects.forEach((project, ip) -> {
+                String where = qual + "/" + project;
+                assertEquals(where, ip.getId(), found.get(project).getId());
+                assertEquals(where, ip.getParameters(), found.get(project).getParameters());
+                assertSame(where, found.get(project), compiled.get(qual, project));
+            });
+            assertNull(qual, compiled.get(qual, "NOPE"));
+        });
+        assertNull(parsed.get("com.example.Many.projects").get("OTHER").getParameters());
+        assertEquals(Collections.emptyList(), compiled.get("com.example.Many.projects", "ÉTÉ").getParameters());
+    }
+
+    @Test
+    public void missesAreNull() throws Exception {
+        File bin = this.tmp.newFile("mapping.bin");
+        MappingCompiler.compile(this.json, bin);
+        CompiledMapping compiled = CompiledMapping.open(bin);
+
+        // Strings that are in the table but are not methods, near misses, and colliding names that are not mapped
+        List<String> misses = new ArrayList<>(Arrays.asList("PROJ", "PROJ-1", "param1", "name", "", "ÉTÉ",
+                "com.example.Many", "com.example.Many.projects ", "com.example.Many.projectS",
+                "com.example.pkg0.Class0.method500"));
+        misses.addAll(this.missing);
+        for (String qual : misses) {
+            assertNull(qual, compiled.get(qual));
+            assertNull(qual, compiled.get(qual, "PROJ"));
+        }
+    }
+
+    @Test
+    public void collidingMethodsAreAllFound() throws Exception {
+        int hash = CompiledMapping.hash(this.colliding.get(0));
+        for (String qual : this.colliding)
+            assertEquals(qual, hash, CompiledMapping.hash(qual));
+        for (String qual : this.missing)
+            assertEquals(qual, hash, CompiledMapping.hash(qual));
+
+        // Only the colliding methods, so the table is nothing but one long probe sequence
+        Map<String, Map<String, IdParams>> parsed = new LinkedHashMap<>();
+        MappingParser.parse(this.json).forEach((qual, projects) -> {
+            if (this.colliding.contains(qual))
+                parsed.put(qual, projects);
+        });
+        File bin = this.tmp.newFile("colliding.bin");
+        assertEquals(this.colliding.size(), MappingCompiler.compile(parsed, bin));
+        CompiledMapping compiled = CompiledMapping.open(bin);
+        for (String qual : this.colliding)
+            assertEquals(qual, parsed.get(qual).get("PROJ").getId(), compiled.get(qual, "PROJ").getId());
+        for (String qual : this.missing)
+            assertNull(qual, compiled.get(qual));
+    }
+
+    @Test
+    public void compilingIsDeterministic() throws Exception {
+        File first = this.tmp.newFile("first.bin");
+        File second = this.tmp.newFile("second.bin");
+        MappingCompiler.compile(this.json, first);
+        MappingCompiler.compile(MappingParser.parse(this.json), second);
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+    }
+}
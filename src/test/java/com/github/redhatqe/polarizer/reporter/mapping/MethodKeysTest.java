@@ -0,0 +1,69 @@
+package com.github.redhatqe.polarizer.reporter.mapping;
+
+import com.github.redhatqe.polarizer.reporter.utils.FileHelper;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class MethodKeysTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        MappingIndex.invalidateAll();
+    }
+
+    private static void write(File mapping, String... methods) throws IOException {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < methods.length; i++)
+            sb.append(String.format("%s\"%s\": {\"PROJ\": {\"id\": \"PROJ-%d\", \"parameters\": []}}",
+                    i == 0 ? "" : ", ", methods[i], i));
+        Files.write(mapping.toPath(), sb.append("}").toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void indexKeysAreTheInstancesHandedOut() throws IOException {
+        File mapping = this.tmp.newFile("mapping.json");
+        write(mapping, "a.B.c", "a.B.d");
+        MappingIndex.invalidateAll();
+        MappingIndex index = MappingIndex.load(mapping);
+        assertEquals(2, MethodKeys.size());
+        assertNotNull(index.get(MethodKeys.key("a.B", "c")));
+        assertSame(MethodKeys.key("a.B", "c"), MethodKeys.intern(new String("a.B.c")));
+    }
+
+    @Test
+    public void reloadDropsTheOldNames() throws IOException {
+        File mapping = this.tmp.newFile("mapping.json");
+        write(mapping, "a.B.c", "a.B.d");
+        MappingIndex.invalidateAll();
+        MappingIndex.load(mapping);
+        write(mapping, "x.Y.one", "x.Y.two", "x.Y.three");
+        MappingIndex index = MappingIndex.load(mapping);
+        assertEquals(3, MethodKeys.size());
+        assertNull(index.get("a.B.c"));
+        assertNotNull(index.get(MethodKeys.key("x.Y", "two")));
+
+        MappingIndex.invalidate(mapping);
+        assertEquals(0, MethodKeys.size());
+    }
+
+    @Test
+    public void loadMappingDoesNotPool() throws IOException {
+        File mapping = this.tmp.newFile("mapping.json");
+        write(mapping, "a.B.c", "a.B.d");
+        MappingIndex.invalidateAll();
+        for (int i = 0; i < 3; i++)
+            assertEquals(2, FileHelper.loadMapping(mapping).size());
+        assertEquals(0, MethodKeys.size());
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.redhatqe.polarizer.reporter.mapping;
+
+import com.github.redhatqe.polarizer.reporter.IdParams;
+import com.github.redhatqe.polarizer.reporter.exceptions.MappingError;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ShardedMappingTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        MappingIndex.invalidateAll();
+    }
+
+    private static Map<String, Map<String, IdParams>> mapping(String... methods) {
+        Map<String, Map<String, IdParams>> mapping = new HashMap<>();
+        for (int i = 0; i < methods.length; i++)
+            mapping.put(methods[i], Collections.singletonMap("PROJ",
+                    new IdParams("PROJ-" + i, Arrays.asList("a", "b"))));
+        return mapping;
+    }
+
+    private static void write(File file, String json) throws IOException {
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void stampOnlyCoversTheIndexAndItsShards() throws IOException {
+        File dir = this.tmp.newFolder("sharded");
+        Map<String, String> shards = MappingSharder.shard(mapping("a.b.C.one", "x.y.Z.two"), dir, 2);
+        assertEquals(2, shards.size());
+        long[] before = ShardedMapping.stamp(dir);
+        MappingIndex index = MappingIndex.load(dir);
+
+        // Left over by an interrupted shard-mapping, and something else entirely
+        write(new File(dir, "a.b.json1234.tmp"), "{\"half\": ");
+        write(new File(dir, "README"), "not a shard");
+        assertArrayEquals(before, ShardedMapping.stamp(dir));
+        assertSame(index, MappingIndex.load(dir));
+
+        write(new File(dir, shards.get("a.b")), "{}");
+        assertNotEquals(before[1], ShardedMapping.stamp(dir)[1]);
+        MappingIndex reloaded = MappingIndex.load(dir);
+        assertNotSame(index, reloaded);
+        assertNull(reloaded.get("a.b.C.one", "PROJ"));
+        assertEquals("PROJ-1", reloaded.get("x.y.Z.two", "PROJ").getId());
+    }
+
+    @Test
+    public void readAllHasEveryShard() throws IOException {
+        File dir = this.tmp.newFolder("sharded");
+        Map<String, Map<String, IdParams>> mapping = mapping("a.b.C.one", "a.b.C.two", "x.y.Z.three", "Top.four");
+        MappingSharder.shard(mapping, dir, 2);
+        Map<String, Map<String, IdParams>> all = MappingParser.parseShards(dir);
+        assertEquals(mapping.keySet(), all.keySet());
+        mapping.forEach((qual, projects) -> {
+            assertEquals(projects.get("PROJ").getId(), all.get(qual).get("PROJ").getId());
+            assertEquals(projects.get("PROJ").getParameters(), all.get(qual).get("PROJ").getParameters());
+        });
+    }
+
+    @Test
+    public void readAllRejectsAMethodInTwoShards() throws IOException {
+        File dir = this.tmp.newFolder("sharded");
+        write(new File(dir, ShardedMapping.INDEX),
+                "{\"shards\": {\"a\": \"a.json\", \"a.b\": \"a.b.json\"}}");
+        write(new File(dir, "a.json"),
+                "{\"a.b.C.one\": {\"PROJ\": {\"id\": \"PROJ-1\", \"parameters\": []}}}");
+        write(new File(dir, "a.b.json"),
+                "{\"a.b.C.one\": {\"PROJ\": {\"id\": \"PROJ-2\", \"parameters\": []}}}");
+        try {
+            MappingParser.parseShards(dir);
+            fail("a method in two shards was read");
+        } catch (MappingError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("a.b.C.one"));
+            assertTrue(e.getMessage(), e.getMessage().contains("a.json"));
+            assertTrue(e.getMessage(), e.getMessage().contains("a.b.json"));
+        }
+    }
+}
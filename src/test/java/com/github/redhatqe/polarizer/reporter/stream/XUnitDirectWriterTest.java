@@ -0,0 +1,297 @@
+package com.github.redhatqe.polarizer.reporter.stream;
+
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Error;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Failure;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Properties;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Property;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+import com.github.redhatqe.polarizer.reporter.jaxb.JAXBRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that XUnitDirectWriter writes the same bytes as marshalling the same Testsuites with the (formatted) JAXB
+ * Marshaller
+ */
+public class XUnitDirectWriterTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static byte[] jaxb(Testsuites suites) throws JAXBException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        JAXBRegistry.marshaller(Testsuites.class).marshal(suites, bos);
+        return bos.toByteArray();
+    }
+
+    private static byte[] direct(Testsuites suites) throws XMLStreamException, IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (XUnitDirectWriter writer = new XUnitDirectWriter(bos)) {
+            writer.startTestsuites(suites);
+            for (Testsuite ts : suites.getTestsuite())
+                writer.writeTestsuite(ts);
+            writer.endTestsuites();
+        }
+        return bos.toByteArray();
+    }
+
+    private static void assertSameBytes(Testsuites suites) throws JAXBException, XMLStreamException, IOException {
+        byte[] expected = jaxb(suites);
+        byte[] actual = direct(suites);
+        // Compare the text first for a readable diff, then the bytes, which is what matters
+        assertEquals(new String(expected, StandardCharsets.UTF_8), new String(actual, StandardCharsets.UTF_8));
+        assertArrayEquals(expected, actual);
+    }
+
+    private static Testsuites suites(String name) {
+        Testsuites suites = new Testsuites();
+        suites.setName(name);
+        suites.setTests("1");
+        suites.setFailures("0");
+        suites.setErrors("0");
+        suites.setTime("0.5");
+        return suites;
+    }
+
+    private static Testsuite suite(String name, Testcase... testcases) {
+        Testsuite ts = new Testsuite();
+        ts.setName(name);
+        ts.setTests(Integer.toString(testcases.length));
+        ts.setFailures("0");
+        ts.setErrors("0");
+        ts.setSkipped("0");
+        ts.setTime("0.5");
+        for (Testcase tc : testcases)
+            ts.getTestcase().add(tc);
+        return ts;
+    }
+
+    private static Testcase testcase(String name) {
+        Testcase tc = new Testcase();
+        tc.setName(name);
+        tc.setClassname("com.example.Tests");
+        tc.setTime("0.25");
+        return tc;
+    }
+
+    private static Properties properties(String... nameValues) {
+        Properties props = new Properties();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            Property p = new Property();
+            p.setName(nameValues[i]);
+            p.setValue(nameValues[i + 1]);
+            props.getProperty().add(p);
+        }
+        return props;
+    }
+
+    private static Error error(String type, String message, String content) {
+        Error e = new Error();
+        e.setType(type);
+        e.setMessage(message);
+        e.setContent(content);
+        return e;
+    }
+
+    private static Failure failure(String type, String message, String content) {
+        Failure f = new Failure();
+        f.setType(type);
+        f.setMessage(message);
+        f.setContent(content);
+        return f;
+    }
+
+    @Test
+    public void escapesMarkupInTextAndAttributes() throws Exception {
+        String nasty = "a & b < c > d \"e\" 'f'";
+        Testsuites suites = suites(nasty);
+        suites.setProperties(properties("polarion-custom-" + nasty, nasty));
+        Testcase tc = testcase(nasty);
+        tc.getError().add(error(nasty, nasty, nasty));
+        tc.getSystemOut().add(nasty);
+        Testsuite ts = suite(nasty, tc);
+        ts.setSystemErr(nasty);
+        suites.getTestsuite().add(ts);
+
+        assertSameBytes(suites);
+        String xml = new String(direct(suites), StandardCharsets.UTF_8);
+        assertTrue(xml.contains("name=\"a &amp; b &lt; c &gt; d &quot;e&quot; 'f'\""));
+        assertTrue(xml.contains(">a &amp; b &lt; c &gt; d \"e\" 'f'</system-out>"));
+    }
+
+    @Test
+    public void encodesNonAsciiAndSurrogatePairs() throws Exception {
+        // 2 byte, 3 byte and 4 byte (a surrogate pair) UTF-8 sequences
+        String text = "café € 日本 😀 𝄞";
+        Testsuites suites = suites(text);
+        Testcase tc = testcase(text);
+        tc.getFailure().add(failure("java.lang.AssertionError", text, text));
+        suites.getTestsuite().add(suite(text, tc));
+
+        assertSameBytes(suites);
+        assertTrue(new String(direct(suites), StandardCharsets.UTF_8).contains(text));
+    }
+
+    private static Testsuites unpaired(String text) {
+        Testsuites suites = suites(text);
+        Testcase tc = testcase(text);
+        tc.getFailure().add(failure(text, text, text));
+        tc.getSystemOut().add(text);
+        suites.getTestsuite().add(suite(text, tc));
+        return suites;
+    }
+
+    @Test
+    public void writesUnpairedSurrogatesLikeTheJdkEncoder() throws Exception {
+        // Lone high and low surrogates, two highs in a row, a real pair, and a high surrogate at the very end
+        String text = "lone \ud800 high, \udc00 low, two \ud800\ud800 highs, a pair \ud83d\ude00, last \ud83d";
+        // JAXB pairs an unpaired surrogate with whatever char follows it (and fails on the last one), so the
+        // reference is JAXB's output for the text as the JDK encoder sees it, with each unpaired surrogate as a ?
+        String encoded = new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        assertEquals("lone ? high, ? low, two ?? highs, a pair \ud83d\ude00, last ?", encoded);
+        byte[] expected = jaxb(unpaired(encoded));
+        assertArrayEquals(expected, direct(unpaired(text)));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Testsuites suites = unpaired(text);
+        try (XUnitStreamWriter writer = new XUnitStreamWriter(bos)) {
+            writer.startTestsuites(suites);
+            writer.writeTestsuite(suites.getTestsuite().get(0));
+        }
+        assertArrayEquals(expected, bos.toByteArray());
+    }
+
+    @Test
+    public void leavesOutNullAttributes() throws Exception {
+        Testsuites suites = new Testsuites();
+        Testsuite ts = new Testsuite();
+        ts.setName("nulls");
+        ts.setTests("1");
+        Testcase tc = new Testcase();
+        tc.setName("only-a-name");
+        tc.getError().add(error(null, null, null));
+        tc.getFailure().add(failure(null, "message only", null));
+        ts.getTestcase().add(tc);
+        suites.getTestsuite().add(ts);
+
+        assertSameBytes(suites);
+        String xml = new String(direct(suites), StandardCharsets.UTF_8);
+        assertFalse(xml.contains("\"null\""));
+        assertFalse(xml.contains("classname="));
+    }
+
+    @Test
+    public void writesEmptyProperties() throws Exception {
+        Testsuites suites = suites("empty");
+        suites.setProperties(new Properties());
+        Testcase tc = testcase("empty");
+        tc.setProperties(new Properties());
+        Testsuite ts = suite("empty", tc);
+        ts.setProperties(new Properties());
+        suites.getTestsuite().add(ts);
+
+        assertSameBytes(suites);
+    }
+
+    @Test
+    public void writesEveryErrorFailureAndSystemOut() throws Exception {
+        Testsuites suites = suites("many");
+        suites.setProperties(properties("polarion-project-id", "PROJ", "polarion-user-id", "tester"));
+        Testcase tc = testcase("many");
+        tc.setSkipped("skipped because of a dependency");
+        tc.setAssertions("3");
+        for (int i = 0; i < 3; i++) {
+            tc.getError().add(error("java.lang.RuntimeException", "error " + i, "trace " + i + "\n\tat a.B.c"));
+            tc.getFailure().add(failure("java.lang.AssertionError", "failure " + i, "trace " + i));
+            tc.getSystemOut().add("out " + i);
+            tc.getSystemErr().add("err " + i);
+        }
+        tc.setProperties(properties("polarion-testcase-id", "PROJ-1", "polarion-parameter-a", "1"));
+        Testsuite first = suite("first", tc, testcase("passed"));
+        first.setProperties(properties("suite", "first"));
+        first.setSystemOut("suite out");
+        first.setSystemErr("suite err");
+        first.setTimestamp("2017-01-01T00:00:00");
+        first.setHostname("localhost");
+        first.setId("0");
+        first.setPackage("com.example");
+        first.setDisabled("0");
+        suites.getTestsuite().add(first);
+        suites.getTestsuite().add(suite("second", testcase("other")));
+        suites.getTestsuite().add(suite("third"));
+
+        assertSameBytes(suites);
+    }
+
+    @Test
+    public void fragmentsSpliceIntoTheSameDocument() throws Exception {
+        Testsuites suites = suites("fragments");
+        suites.setProperties(properties("polarion-project-id", "PROJ"));
+        Testcase failed = testcase("failed <&>");
+        failed.getFailure().add(failure("java.lang.AssertionError", "\"expected\"", "é😀"));
+        Testsuite first = suite("first", testcase("a"), failed);
+        first.setSystemOut("first out");
+        Testsuite empty = suite("empty");
+        Testsuite last = suite("last", testcase("b"));
+        suites.getTestsuite().add(first);
+        suites.getTestsuite().add(empty);
+        suites.getTestsuite().add(last);
+
+        // Each testsuite's testcases go to a fragment of their own, which are then copied in between the headers
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (XUnitDirectWriter writer = new XUnitDirectWriter(bos)) {
+            writer.startTestsuites(suites);
+            for (Testsuite ts : suites.getTestsuite()) {
+                File fragment = this.tmp.newFile();
+                try (XUnitDirectWriter fw = XUnitDirectWriter.fragment(fragment, 2)) {
+                    for (Testcase tc : ts.getTestcase())
+                        fw.writeTestcase(tc);
+                }
+                writer.startTestsuite(ts);
+                writer.writeFragment(fragment, ts.getTestcase().size());
+                writer.endTestsuite(ts);
+            }
+            writer.endTestsuites();
+            assertEquals(3, writer.getTestsuiteCount());
+            assertEquals(3, writer.getTestcaseCount());
+        }
+
+        byte[] expected = jaxb(suites);
+        assertEquals(new String(expected, StandardCharsets.UTF_8), bos.toString("UTF-8"));
+        assertArrayEquals(expected, bos.toByteArray());
+    }
+
+    @Test
+    public void writesTheSameFileAsXUnitStreamWriter() throws Exception {
+        Testsuites suites = suites("stream & direct");
+        suites.setProperties(properties("polarion-project-id", "PROJ"));
+        Testcase tc = testcase("tést");
+        tc.getError().add(error("java.lang.RuntimeException", "<boom>", "😀"));
+        suites.getTestsuite().add(suite("suite", tc));
+
+        File stream = this.tmp.newFile("stream.xml");
+        File direct = this.tmp.newFile("direct.xml");
+        for (File out : new File[]{stream, direct}) {
+            try (XUnitWriter writer = XUnitWriter.open(out, out == direct ? "direct" : "stax")) {
+                writer.startTestsuites(suites);
+                for (Testsuite ts : suites.getTestsuite())
+                    writer.writeTestsuite(ts);
+                writer.endTestsuites();
+            }
+        }
+        assertArrayEquals(Files.readAllBytes(stream.toPath()), Files.readAllBytes(direct.toPath()));
+        assertArrayEquals(jaxb(suites), Files.readAllBytes(direct.toPath()));
+    }
+}
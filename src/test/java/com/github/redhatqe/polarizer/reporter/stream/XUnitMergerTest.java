@@ -0,0 +1,72 @@
+package com.github.redhatqe.polarizer.reporter.stream;
+
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+import com.github.redhatqe.polarizer.reporter.jaxb.JAXBRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class XUnitMergerTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File xunit(String name, String... lines) throws IOException {
+        File f = this.tmp.newFile(name);
+        Files.write(f.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return f;
+    }
+
+    @Test
+    public void totalsAreCountedFromTheTestcases() throws IOException, XMLStreamException, JAXBException {
+        // The headers of both inputs are wrong
+        File a = this.xunit("a.xml",
+                "<testsuites tests=\"9\" failures=\"9\" errors=\"9\">",
+                "  <properties><property name=\"polarion-project-id\" value=\"PROJ\"/></properties>",
+                "  <testsuite name=\"s\" tests=\"7\" failures=\"0\" errors=\"0\" skipped=\"0\" time=\"1.5\">",
+                "    <testcase name=\"pass\" classname=\"a.B\"/>",
+                "    <testcase name=\"fail\" classname=\"a.B\"><failure message=\"f\"/></testcase>",
+                "    <testcase name=\"both\" classname=\"a.B\"><failure message=\"f\"/><error message=\"e\"/>"
+                        + "</testcase>",
+                "  </testsuite>",
+                "</testsuites>");
+        File b = this.xunit("b.xml",
+                "<testsuites tests=\"1\">",
+                "  <properties><property name=\"polarion-project-id\" value=\"OTHER\"/></properties>",
+                "  <testsuite name=\"s\" tests=\"1\" skipped=\"3\" time=\"0.25\">",
+                "    <testcase name=\"skip\" classname=\"a.C\"><skipped/></testcase>",
+                "    <testcase name=\"errs\" classname=\"a.C\"><error message=\"1\"/><error message=\"2\"/>"
+                        + "</testcase>",
+                "  </testsuite>",
+                "</testsuites>");
+        File out = new File(this.tmp.getRoot(), "merged.xml");
+
+        XUnitMerger merger = new XUnitMerger(Arrays.asList(a, b));
+        merger.merge(out);
+        assertEquals(1, merger.getTestsuiteCount());
+        assertEquals(5, merger.getTestcaseCount());
+
+        Testsuites merged = (Testsuites) JAXBRegistry.unmarshaller(Testsuites.class).unmarshal(out);
+        assertEquals("5", merged.getTests());
+        assertEquals("1", merged.getFailures());
+        assertEquals("2", merged.getErrors());
+        assertEquals("PROJ", merged.getProperties().getProperty().get(0).getValue());
+        Testsuite suite = merged.getTestsuite().get(0);
+        assertEquals("5", suite.getTests());
+        assertEquals("1", suite.getFailures());
+        assertEquals("2", suite.getErrors());
+        assertEquals("1", suite.getSkipped());
+        assertEquals("1.75", suite.getTime());
+        assertEquals(5, suite.getTestcase().size());
+    }
+}
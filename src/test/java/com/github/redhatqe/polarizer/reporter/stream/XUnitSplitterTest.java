@@ -0,0 +1,157 @@
+package com.github.redhatqe.polarizer.reporter.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Error;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Failure;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Properties;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Property;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+import com.github.redhatqe.polarizer.reporter.jaxb.JAXBRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.bind.JAXBException;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class XUnitSplitterTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File xunit;
+
+    private static Testcase testcase(String name) {
+        Testcase tc = new Testcase();
+        tc.setName(name);
+        tc.setClassname("com.example.Tests");
+        tc.setTime("0.5");
+        return tc;
+    }
+
+    /**
+     * Writes a testsuite "a" of 6 testcases, the first of which has both an error and a failure, the second a failure
+     * and the third is skipped, and a testsuite "b" of 3 passing testcases with a system-out
+     */
+    @Before
+    public void setUp() throws Exception {
+        Testsuites suites = new Testsuites();
+        suites.setName("split");
+        Properties props = new Properties();
+        for (String name : new String[]{"polarion-project-id", "polarion-user-id", "polarion-testrun-title"}) {
+            Property p = new Property();
+            p.setName(name);
+            p.setValue(name + "-value");
+            props.getProperty().add(p);
+        }
+        suites.setProperties(props);
+
+        Testsuite a = new Testsuite();
+        a.setName("a");
+        a.setTests("6");
+        for (int i = 0; i < 6; i++)
+            a.getTestcase().add(testcase("a" + i));
+        Error error = new Error();
+        error.setMessage("boom");
+        Failure failure = new Failure();
+        failure.setMessage("fail");
+        a.getTestcase().get(0).getError().add(error);
+        a.getTestcase().get(0).getFailure().add(failure);
+        a.getTestcase().get(1).getFailure().add(failure);
+        a.getTestcase().get(2).setSkipped("");
+        Testsuite b = new Testsuite();
+        b.setName("b");
+        b.setTests("3");
+        for (int i = 0; i < 3; i++)
+            b.getTestcase().add(testcase("b" + i));
+        char[] out = new char[600];
+        Arrays.fill(out, 'x');
+        b.setSystemOut(new String(out));
+
+        this.xunit = this.tmp.newFile("results.xml");
+        try (XUnitStreamWriter writer = new XUnitStreamWriter(this.xunit)) {
+            writer.startTestsuites(suites);
+            writer.writeTestsuite(a);
+            writer.writeTestsuite(b);
+        }
+    }
+
+    private static Testsuites read(XUnitSplitter.Chunk chunk) throws JAXBException {
+        return (Testsuites) JAXBRegistry.unmarshaller(Testsuites.class).unmarshal(new File(chunk.file));
+    }
+
+    /**
+     * Checks what every chunk must have: the polarion-* properties and counts that add up
+     */
+    private static void assertComplete(List<XUnitSplitter.Chunk> chunks) throws JAXBException {
+        for (XUnitSplitter.Chunk chunk : chunks) {
+            Testsuites suites = read(chunk);
+            assertEquals("split", suites.getName());
+            assertEquals(Arrays.asList("polarion-project-id", "polarion-user-id", "polarion-testrun-title"),
+                    suites.getProperties().getProperty().stream().map(Property::getName).collect(Collectors.toList()));
+            int testcases = 0;
+            for (Testsuite ts : suites.getTestsuite()) {
+                int tests = Integer.parseInt(ts.getTests());
+                assertEquals(ts.getTestcase().size(), tests);
+                assertTrue(Integer.parseInt(ts.getFailures()) + Integer.parseInt(ts.getErrors())
+                        + Integer.parseInt(ts.getSkipped()) <= tests);
+                testcases += tests;
+            }
+            assertEquals(chunk.testcases, testcases);
+            assertEquals(new File(chunk.file).length(), chunk.bytes);
+        }
+        assertEquals(9, chunks.stream().mapToInt(c -> c.testcases).sum());
+    }
+
+    @Test
+    public void splitsByTestcaseCount() throws Exception {
+        File dir = this.tmp.newFolder();
+        List<XUnitSplitter.Chunk> chunks = new XUnitSplitter(0, 4).split(this.xunit, dir);
+        assertEquals(Arrays.asList(4, 4, 1), chunks.stream().map(c -> c.testcases).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(1, 2, 1), chunks.stream().map(c -> c.testsuites).collect(Collectors.toList()));
+        assertComplete(chunks);
+
+        // An error wins over a failure, so the first testcase is only counted once
+        Testsuite first = read(chunks.get(0)).getTestsuite().get(0);
+        assertEquals("1", first.getErrors());
+        assertEquals("1", first.getFailures());
+        assertEquals("1", first.getSkipped());
+        Testsuite last = read(chunks.get(2)).getTestsuite().get(0);
+        assertEquals("b", last.getName());
+        assertNotNull(last.getSystemOut());
+
+        JsonNode manifest = new ObjectMapper().readTree(XUnitSplitter.manifest(this.xunit, dir));
+        assertEquals(this.xunit.toString(), manifest.get("source").asText());
+        assertEquals(4, manifest.get("max-testcases").asInt());
+        assertEquals(3, manifest.get("chunks").size());
+        for (int i = 0; i < chunks.size(); i++) {
+            assertEquals(new File(dir, String.format("results-%03d.xml", i + 1)).toString(),
+                    manifest.get("chunks").get(i).get("file").asText());
+            assertEquals(chunks.get(i).testcases, manifest.get("chunks").get(i).get("testcases").asInt());
+        }
+    }
+
+    @Test
+    public void splitsByBytes() throws Exception {
+        long max = 1400;
+        List<XUnitSplitter.Chunk> chunks = new XUnitSplitter(max, 0).split(this.xunit, this.tmp.newFolder());
+        assertTrue(chunks.size() > 1);
+        for (XUnitSplitter.Chunk chunk : chunks)
+            assertTrue(String.format("%s is %d bytes", chunk.file, chunk.bytes), chunk.bytes <= max);
+        assertComplete(chunks);
+
+        // The system-out of b fits, but only in a chunk of its own
+        List<Testsuite> last = new ArrayList<>(read(chunks.get(chunks.size() - 1)).getTestsuite());
+        assertEquals("b", last.get(last.size() - 1).getName());
+        assertNotNull(last.get(last.size() - 1).getSystemOut());
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.redhatqe.polarizer.reporter.stream;
+
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Error;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Properties;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testcase;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuite;
+import com.github.redhatqe.polarizer.reporter.importer.xunit.Testsuites;
+import com.github.redhatqe.polarizer.reporter.jaxb.JAXBRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class XUnitStreamWriterTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static Testsuites childless() {
+        Testsuites suites = new Testsuites();
+        suites.setName("childless");
+        suites.setProperties(new Properties());
+        Testsuite empty = new Testsuite();
+        empty.setName("empty");
+        empty.setTests("0");
+        Testsuite one = new Testsuite();
+        one.setName("one");
+        one.setTests("2");
+        Testcase bare = new Testcase();
+        bare.setName("bare");
+        Testcase errored = new Testcase();
+        errored.setName("errored");
+        errored.setSkipped("");
+        Error noContent = new Error();
+        noContent.setMessage("no content");
+        Error emptyContent = new Error();
+        emptyContent.setMessage("empty content");
+        emptyContent.setContent("");
+        errored.getError().add(noContent);
+        errored.getError().add(emptyContent);
+        errored.setProperties(new Properties());
+        one.getTestcase().add(bare);
+        one.getTestcase().add(errored);
+        suites.getTestsuite().add(empty);
+        suites.getTestsuite().add(one);
+        return suites;
+    }
+
+    private static String jaxb(Testsuites suites) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        JAXBRegistry.marshaller(Testsuites.class).marshal(suites, bos);
+        return bos.toString("UTF-8");
+    }
+
+    @Test
+    public void childlessElementsAreEmptyElementTags() throws Exception {
+        Testsuites suites = childless();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (XUnitStreamWriter writer = new XUnitStreamWriter(bos)) {
+            writer.startTestsuites(suites);
+            for (Testsuite ts : suites.getTestsuite())
+                writer.writeTestsuite(ts);
+        }
+        String xml = bos.toString("UTF-8");
+        assertEquals(jaxb(suites), xml);
+        assertTrue(xml.contains("<testsuite name=\"empty\" tests=\"0\"/>"));
+        assertTrue(xml.contains("<error message=\"no content\"/>"));
+    }
+
+    @Test
+    public void emptyFragmentsLeaveTheTestsuiteEmpty() throws Exception {
+        Testsuites suites = childless();
+        File empty = this.tmp.newFile();
+        File fragment = this.tmp.newFile();
+        try (XUnitStreamWriter fw = XUnitStreamWriter.fragment(new FileOutputStream(fragment), 2)) {
+            for (Testcase tc : suites.getTestsuite().get(1).getTestcase())
+                fw.writeTestcase(tc);
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (XUnitStreamWriter writer = new XUnitStreamWriter(bos)) {
+            writer.startTestsuites(suites);
+            writer.startTestsuite(suites.getTestsuite().get(0));
+            writer.writeFragment(empty, 0);
+            writer.endTestsuite(suites.getTestsuite().get(0));
+            writer.startTestsuite(suites.getTestsuite().get(1));
+            writer.writeFragment(empty, 0);
+            writer.writeFragment(fragment, 2);
+            writer.endTestsuite(suites.getTestsuite().get(1));
+            writer.endTestsuites();
+            assertEquals(2, writer.getTestcaseCount());
+        }
+        assertEquals(jaxb(suites), new String(bos.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void unpairedSurrogatesAreWrittenAsQuestionMarks() throws Exception {
+        String text = "lone \ud800 high, \udc00 low, two \ud800\ud800 highs, a pair \ud83d\ude00, last \ud83d";
+        Testsuites suites = new Testsuites();
+        suites.setName(text);
+        Testsuite ts = new Testsuite();
+        ts.setSystemOut(text);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (XUnitStreamWriter writer = new XUnitStreamWriter(bos)) {
+            writer.startTestsuites(suites);
+            writer.startTestsuite(ts);
+            writer.endTestsuite(ts);
+        }
+        String expected = new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        String xml = bos.toString("UTF-8");
+        assertTrue(xml.contains("<testsuites name=\"" + expected + "\">"));
+        assertTrue(xml.contains("<system-out>" + expected + "</system-out>"));
+    }
+
+    @Test
+    public void flushEndsOnACompleteTestcase() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XUnitStreamWriter writer = XUnitStreamWriter.fragment(bos, 2);
+        Testcase bare = new Testcase();
+        bare.setName("bare");
+        writer.writeTestcase(bare);
+        writer.flush();
+        assertEquals("\n        <testcase name=\"bare\"/>", bos.toString("UTF-8"));
+        writer.close();
+    }
+}
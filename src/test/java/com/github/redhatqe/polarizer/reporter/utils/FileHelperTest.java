@@ -0,0 +1,62 @@
+package com.github.redhatqe.polarizer.reporter.utils;
+
+import com.github.redhatqe.polarizer.reporter.IdParams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FileHelperTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void resolvesDirectoriesAndGlobs() throws IOException {
+        File a = this.tmp.newFolder("shard-a");
+        File b = this.tmp.newFolder("shard-b");
+        File ra = new File(a, "results.xml");
+        File rb = new File(b, "results.xml");
+        assertTrue(ra.createNewFile() && rb.createNewFile() && new File(b, "other.txt").createNewFile());
+
+        assertTrue(FileHelper.isBatch(a.getPath()));
+        assertTrue(FileHelper.isBatch(this.tmp.getRoot() + "/shard-*/results.xml"));
+        assertFalse(FileHelper.isBatch(ra.getPath()));
+
+        assertEquals(Arrays.asList(rb), FileHelper.resolve(b.getPath()));
+        assertEquals(Arrays.asList(ra.getAbsoluteFile(), rb.getAbsoluteFile()),
+                FileHelper.resolve(this.tmp.getRoot() + "/shard-*/results.xml"));
+    }
+
+    @Test
+    public void loadedMappingsAreMutableCopies() throws IOException {
+        File mapping = this.tmp.newFile("mapping.json");
+        String json = "{\"a.B.c\": {\"PROJ\": {\"id\": \"PROJ-1\", \"parameters\": [\"x\"]}},\n"
+                + " \"a.B.d\": {\"PROJ\": {\"id\": \"PROJ-2\", \"parameters\": [\"x\"]}}}";
+        Files.write(mapping.toPath(), json.getBytes(StandardCharsets.UTF_8));
+
+        Map<String, Map<String, IdParams>> all = FileHelper.loadMapping(mapping);
+        all.get("a.B.c").get("PROJ").getParameters().add("y");
+        all.get("a.B.c").put("OTHER", new IdParams("OTHER-1", Collections.emptyList()));
+        all.remove("a.B.d");
+        // The parameter lists are not shared between methods or between loads
+        assertEquals(Arrays.asList("x"), FileHelper.loadMapping(mapping).get("a.B.d").get("PROJ").getParameters());
+
+        Map<String, IdParams> proj = FileHelper.loadMapping(mapping, "PROJ");
+        proj.get("a.B.c").getParameters().clear();
+        proj.remove("a.B.d");
+        assertEquals(Arrays.asList("x"), FileHelper.loadMapping(mapping, "PROJ").get("a.B.c").getParameters());
+
+        File missing = new File(this.tmp.getRoot(), "missing.json");
+        FileHelper.loadMapping(missing).put("a.B.c", all.get("a.B.c"));
+        FileHelper.loadMapping(missing, "PROJ").put("a.B.c", proj.get("a.B.c"));
+    }
+}